@@ -0,0 +1,112 @@
+package snippets.bench;
+
+/**
+ * Latencies in nanoseconds, counted in log-linear buckets the way
+ * HdrHistogram does: values under {@value #SUB_BUCKETS} each get their own
+ * bucket, and above that each power of two is split into
+ * {@value #SUB_BUCKETS} / 2 equal buckets, so any value is reported within
+ * 1/128 (under 1%) of what was recorded, from a nanosecond to the longest
+ * run, in under 60KB. <br>
+ * Not thread safe: record on one histogram per thread and {@link #add} them
+ * up at the end.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 8;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int HALF = SUB_BUCKETS / 2;
+
+	private final long[] counts = new long[SUB_BUCKETS + (64 - SUB_BITS)
+			* HALF];
+	private long count;
+	private long total;
+	private long max;
+
+	/**
+	 * @param nanos
+	 *            a latency; negative counts as 0
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(nanos, 0);
+		counts[index(nanos)]++;
+		count++;
+		total += nanos;
+		max = Math.max(max, nanos);
+	}
+
+	/**
+	 * Add in the latencies recorded on another.
+	 *
+	 * @param other
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return the number of latencies recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the longest latency recorded, exactly
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the mean latency, exactly
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * @param percentile
+	 *            from 0 to 100
+	 * @return the highest value of the bucket the percentile falls in, never
+	 *         over the longest latency recorded; 0 if none were
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1,
+				(long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highest(i), max);
+			}
+		}
+		return max;
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		// The top SUB_BITS bits of the value, from HALF to SUB_BUCKETS - 1
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return SUB_BUCKETS + (shift - 1) * HALF
+				+ (int) (value >>> shift) - HALF;
+	}
+
+	private static long highest(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / HALF + 1;
+		long top = (index - SUB_BUCKETS) % HALF + HALF;
+		return ((top + 1) << shift) - 1;
+	}
+}
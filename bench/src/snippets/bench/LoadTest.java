@@ -0,0 +1,335 @@
+package snippets.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import snippets.BirthDateIndex;
+import snippets.NameMatcher;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+import snippets.QueryRecorder;
+import snippets.RecordedQuery;
+import snippets.ShardedCandidates;
+
+/**
+ * Replays fuzzyNameMatch calls against a {@link NameMatcher} from several
+ * threads and reports the throughput and the latency percentiles, to see
+ * what the matcher does under realistic mixed traffic rather than one query
+ * shape at a time. <br>
+ * The queries come from a log written by {@link QueryRecorder}, or without
+ * one are made up by {@link PersonGenerator#queries}. The source persons are
+ * generated: as many as the largest source in the log, with names drawn from
+ * the log's queries so names cost what they did when recorded. <br>
+ * <b>Closed loop</b> (the default): each thread sends its next query as soon
+ * as its last one returns, so the throughput is the most the matcher can do
+ * and the latency is the time each match took. <br>
+ * <b>Open loop</b>: queries are sent when they are due, at the times they
+ * were recorded (or made up) scaled by the speed, or at a fixed rate, whether
+ * or not the earlier ones have returned. Latency counts from when a query
+ * was due, so time spent queued behind slow queries is counted too. <br>
+ * Options, all optional:
+ * <ul>
+ * <li>--log FILE: the queries to replay; made up without one
+ * <li>--queries N: how many to send, going round the log if it has fewer
+ * (default the log's size, or 10000)
+ * <li>--source N: source persons (default the log's largest, or 100000)
+ * <li>--target prepared|birthdate|sharded|list: what the source is held in
+ * (default prepared)
+ * <li>--mode closed|open (default closed)
+ * <li>--threads N (default one per processor)
+ * <li>--rate N: open loop queries per second, instead of the log's times
+ * (made up queries arrive at 1000 a second by default)
+ * <li>--speed X: open loop, play the log's times X times as fast (default 1)
+ * <li>--warmup N: queries sent from one thread before measuring (default
+ * 1000)
+ * <li>--seed N: for the generated persons (default 1)
+ * </ul>
+ * e.g. <code>java -cp target/benchmarks.jar snippets.bench.LoadTest --log
+ * queries.log --mode open --speed 2 --threads 8</code>
+ */
+public class LoadTest {
+
+	/**
+	 * One way of holding the source persons to match against.
+	 */
+	private interface Target {
+		List<PersonNameMatcher> match(RecordedQuery query);
+	}
+
+	private String log;
+	private int queryCount = -1;
+	private int sourceSize = -1;
+	private String target = "prepared";
+	private boolean open;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private double rate;
+	private double speed = 1;
+	private int warmup = 1000;
+	private long seed = 1;
+
+	private final NameMatcher matcher = new NameMatcher();
+
+	/**
+	 * @param args
+	 *            see the class comment
+	 * @throws IOException
+	 *             if the log can't be read
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws IOException,
+			InterruptedException {
+		LoadTest test = new LoadTest();
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("No value for " + option);
+			}
+			String value = args[++i];
+			if ("--log".equals(option)) {
+				test.log = value;
+			} else if ("--queries".equals(option)) {
+				test.queryCount = Integer.parseInt(value);
+			} else if ("--source".equals(option)) {
+				test.sourceSize = Integer.parseInt(value);
+			} else if ("--target".equals(option)) {
+				test.target = value;
+			} else if ("--mode".equals(option)) {
+				if (!"open".equals(value) && !"closed".equals(value)) {
+					throw new IllegalArgumentException("Unknown mode "
+							+ value);
+				}
+				test.open = "open".equals(value);
+			} else if ("--threads".equals(option)) {
+				test.threads = Integer.parseInt(value);
+			} else if ("--rate".equals(option)) {
+				test.rate = Double.parseDouble(value);
+			} else if ("--speed".equals(option)) {
+				test.speed = Double.parseDouble(value);
+			} else if ("--warmup".equals(option)) {
+				test.warmup = Integer.parseInt(value);
+			} else if ("--seed".equals(option)) {
+				test.seed = Long.parseLong(value);
+			} else {
+				throw new IllegalArgumentException("Unknown option "
+						+ option);
+			}
+		}
+		test.run();
+	}
+
+	private void run() throws IOException, InterruptedException {
+		List<RecordedQuery> queries;
+		List<PersonNameMatcher> source;
+		if (log != null) {
+			InputStream in = Files.newInputStream(Paths.get(log));
+			try {
+				queries = RecordedQuery.read(in);
+			} finally {
+				in.close();
+			}
+			if (queries.isEmpty()) {
+				throw new IllegalArgumentException(log + " has no queries");
+			}
+			List<PersonNameMatcher> sample = new ArrayList<PersonNameMatcher>();
+			int largest = 0;
+			for (RecordedQuery query : queries) {
+				sample.add(query.getPerson());
+				largest = Math.max(largest, query.getSourceSize());
+			}
+			source = new PersonGenerator(seed, sample)
+					.persons(sourceSize > 0 ? sourceSize
+							: largest > 0 ? largest : 100000);
+		} else {
+			PersonGenerator generator = new PersonGenerator(seed);
+			source = generator.persons(sourceSize > 0 ? sourceSize : 100000);
+			queries = generator.queries(source, queryCount > 0 ? queryCount
+					: 10000, rate > 0 ? rate : 1000);
+		}
+		int total = queryCount > 0 ? queryCount : queries.size();
+		Target matches = target(source);
+
+		for (int i = 0; i < warmup; i++) {
+			matches.match(queries.get(i % queries.size()));
+		}
+
+		long start = System.nanoTime();
+		LatencyHistogram latencies = open ? open(matches, queries, total)
+				: closed(matches, queries, total);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println(String.format(Locale.ROOT,
+				"%s loop, %d threads, %s of %d source persons",
+				open ? "Open" : "Closed", threads, target, source.size()));
+		System.out.println(String.format(Locale.ROOT,
+				"%d queries in %.2f s: %.1f queries/s", latencies.getCount(),
+				elapsed / 1e9, latencies.getCount() * 1e9 / elapsed));
+		print("Latency", latencies);
+
+		LatencyHistogram recorded = new LatencyHistogram();
+		for (RecordedQuery query : queries) {
+			if (query.getNanos() > 0) {
+				recorded.record(query.getNanos());
+			}
+		}
+		if (recorded.getCount() > 0) {
+			print("Recorded", recorded);
+		}
+	}
+
+	private Target target(final List<PersonNameMatcher> source) {
+		if ("list".equals(target)) {
+			return new Target() {
+				@Override
+				public List<PersonNameMatcher> match(RecordedQuery query) {
+					return matcher.fuzzyNameMatch(query.getPerson(), source,
+							query.getAlternateLastName(), query.getCeiling(),
+							query.getMaxReturns());
+				}
+			};
+		}
+		if ("prepared".equals(target)) {
+			final PreparedCandidates candidates = new PreparedCandidates(
+					source);
+			return new Target() {
+				@Override
+				public List<PersonNameMatcher> match(RecordedQuery query) {
+					return matcher.fuzzyNameMatch(query.getPerson(),
+							candidates, query.getAlternateLastName(),
+							query.getCeiling(), query.getMaxReturns());
+				}
+			};
+		}
+		if ("birthdate".equals(target)) {
+			final BirthDateIndex index = new BirthDateIndex(source);
+			return new Target() {
+				@Override
+				public List<PersonNameMatcher> match(RecordedQuery query) {
+					return matcher.fuzzyNameMatch(query.getPerson(), index,
+							query.getAlternateLastName(), query.getCeiling(),
+							query.getMaxReturns());
+				}
+			};
+		}
+		if ("sharded".equals(target)) {
+			final ShardedCandidates candidates = new ShardedCandidates(source);
+			return new Target() {
+				@Override
+				public List<PersonNameMatcher> match(RecordedQuery query) {
+					return matcher.fuzzyNameMatch(query.getPerson(),
+							candidates, query.getAlternateLastName(),
+							query.getCeiling(), query.getMaxReturns());
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unknown target " + target);
+	}
+
+	/**
+	 * Each thread sends the next query as soon as its last one returns.
+	 */
+	private LatencyHistogram closed(final Target matches,
+			final List<RecordedQuery> queries, final int total)
+			throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		final LatencyHistogram[] latencies = new LatencyHistogram[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final LatencyHistogram histogram = new LatencyHistogram();
+			latencies[t] = histogram;
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i; (i = next.getAndIncrement()) < total;) {
+						long start = System.nanoTime();
+						matches.match(queries.get(i % queries.size()));
+						histogram.record(System.nanoTime() - start);
+					}
+				}
+			}, "load-" + t);
+			workers[t].start();
+		}
+		LatencyHistogram all = new LatencyHistogram();
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+			all.add(latencies[t]);
+		}
+		return all;
+	}
+
+	/**
+	 * Send each query when it is due onto the threads, and count its
+	 * latency from then.
+	 */
+	private LatencyHistogram open(final Target matches,
+			List<RecordedQuery> queries, int total)
+			throws InterruptedException {
+		final List<LatencyHistogram> latencies = Collections
+				.synchronizedList(new ArrayList<LatencyHistogram>());
+		final ThreadLocal<LatencyHistogram> histograms = new ThreadLocal<LatencyHistogram>() {
+			@Override
+			protected LatencyHistogram initialValue() {
+				LatencyHistogram histogram = new LatencyHistogram();
+				latencies.add(histogram);
+				return histogram;
+			}
+		};
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+
+		// Going round the log again starts after its last arrival
+		long first = Long.MAX_VALUE;
+		long last = Long.MIN_VALUE;
+		for (RecordedQuery query : queries) {
+			first = Math.min(first, query.getArrivalNanos());
+			last = Math.max(last, query.getArrivalNanos());
+		}
+		long length = last - first + 1;
+		long start = System.nanoTime();
+		for (int i = 0; i < total; i++) {
+			final RecordedQuery query = queries.get(i % queries.size());
+			final long due = start
+					+ (rate > 0 ? (long) (i * 1e9 / rate)
+							: (long) ((query.getArrivalNanos() - first + length
+									* (i / queries.size())) / speed));
+			for (long wait; (wait = due - System.nanoTime()) > 0;) {
+				LockSupport.parkNanos(wait);
+			}
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					matches.match(query);
+					histograms.get().record(System.nanoTime() - due);
+				}
+			});
+		}
+		workers.shutdown();
+		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+		LatencyHistogram all = new LatencyHistogram();
+		for (LatencyHistogram histogram : latencies) {
+			all.add(histogram);
+		}
+		return all;
+	}
+
+	private static void print(String title, LatencyHistogram latencies) {
+		System.out.println(String.format(Locale.ROOT,
+				"%s ms: mean %.3f p50 %.3f p90 %.3f p99 %.3f p99.9 %.3f"
+						+ " max %.3f", title, latencies.getMean() / 1e6,
+				latencies.getValueAtPercentile(50) / 1e6,
+				latencies.getValueAtPercentile(90) / 1e6,
+				latencies.getValueAtPercentile(99) / 1e6,
+				latencies.getValueAtPercentile(99.9) / 1e6,
+				latencies.getMax() / 1e6));
+	}
+}
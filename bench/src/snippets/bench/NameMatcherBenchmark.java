@@ -0,0 +1,181 @@
+package snippets.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import snippets.NameMatcher;
+import snippets.NameTreeIndex;
+import snippets.PersonIndex;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+import snippets.test.TestPersonNameMatcher;
+
+/**
+ * One fuzzyNameMatch per operation, against each way of holding the source
+ * persons. Queries are variants of source persons (so most have a match) mixed
+ * with persons that aren't in the source at all. <br>
+ * The larger source sizes need a large heap, e.g.
+ * <code>-jvmArgs -Xmx12g</code>; narrow the run with <code>-p</code>, e.g.
+ * <code>-p sourceSize=1000000 -p ceiling=8</code>.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NameMatcherBenchmark {
+
+	private static final int QUERIES = 1024;
+
+	@Param({ "2", "8", "20" })
+	public int ceiling;
+
+	@Param({ "1", "5", "50" })
+	public int maxReturns;
+
+	private final NameMatcher matcher = new NameMatcher();
+
+	@State(Scope.Benchmark)
+	public static class Source {
+
+		@Param({ "1000", "100000", "1000000", "10000000" })
+		public int sourceSize;
+
+		@Param({ "false", "true" })
+		public boolean alternate;
+
+		List<PersonNameMatcher> persons;
+		PersonNameMatcher[] queries;
+		String[] alternateLastNames;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			PersonGenerator generator = new PersonGenerator(sourceSize);
+			persons = generator.persons(sourceSize);
+			queries = new PersonNameMatcher[QUERIES];
+			alternateLastNames = new String[QUERIES];
+			for (int i = 0; i < QUERIES; i++) {
+				if (i % 4 == 0) {
+					queries[i] = generator.person();
+				} else {
+					queries[i] = generator
+							.variant((TestPersonNameMatcher) persons
+									.get((int) ((long) i * 7919 % sourceSize)));
+				}
+				if (alternate) {
+					alternateLastNames[i] = generator.alternateLastName();
+				}
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Prepared {
+		PreparedCandidates candidates;
+
+		@Setup(Level.Trial)
+		public void setUp(Source source) {
+			candidates = new PreparedCandidates(source.persons);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Tree {
+		NameTreeIndex index;
+
+		@Setup(Level.Trial)
+		public void setUp(Source source) {
+			index = new NameTreeIndex(source.persons);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Blocks {
+		PersonIndex index;
+
+		@Setup(Level.Trial)
+		public void setUp(Source source) {
+			index = new PersonIndex(source.persons);
+		}
+	}
+
+	/**
+	 * Walks through the queries, separately for each benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			next = (next + 1) & (QUERIES - 1);
+			return next;
+		}
+	}
+
+	@Benchmark
+	public List<PersonNameMatcher> list(Source source, Cursor cursor) {
+		int i = cursor.next();
+		return matcher.fuzzyNameMatch(source.queries[i], source.persons,
+				source.alternateLastNames[i], ceiling, maxReturns);
+	}
+
+	@Benchmark
+	public List<PersonNameMatcher> prepared(Source source, Prepared prepared,
+			Cursor cursor) {
+		int i = cursor.next();
+		return matcher.fuzzyNameMatch(source.queries[i], prepared.candidates,
+				source.alternateLastNames[i], ceiling, maxReturns);
+	}
+
+	@Benchmark
+	public List<PersonNameMatcher> nameTreeIndex(Source source, Tree tree,
+			Cursor cursor) {
+		int i = cursor.next();
+		return matcher.fuzzyNameMatch(source.queries[i], tree.index,
+				source.alternateLastNames[i], ceiling, maxReturns);
+	}
+
+	@Benchmark
+	public List<PersonNameMatcher> personIndex(Source source, Blocks blocks,
+			Cursor cursor) {
+		int i = cursor.next();
+		return matcher.fuzzyNameMatch(source.queries[i], blocks.index,
+				source.alternateLastNames[i], ceiling, maxReturns);
+	}
+
+	/**
+	 * Run with the allocation profiler on; any JMH command line options (e.g.
+	 * -p, -jvmArgs) may be passed.
+	 *
+	 * @param args
+	 * @throws RunnerException
+	 * @throws CommandLineOptionException
+	 */
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(NameMatcherBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
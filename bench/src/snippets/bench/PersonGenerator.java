@@ -0,0 +1,277 @@
+package snippets.bench;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import snippets.CsvPerson;
+import snippets.PersonNameMatcher;
+import snippets.RecordedQuery;
+import snippets.test.TestPersonNameMatcher;
+
+/**
+ * Synthetic persons for benchmarking. Names are drawn from common surname and
+ * given name lists with a skew towards the most common, some last names are
+ * hyphenated (or joined by a space) and variants of a person carry the kind of
+ * mistakes the matcher is meant to catch: typos, swapped days of birth, a year
+ * off and a dropped hyphenated part. <br>
+ * Names can instead be drawn from a sample of persons, e.g. the queries of a
+ * recorded log, as often as they occur in it. <br>
+ * The same seed always gives the same persons. Calendars are shared between
+ * persons born on the same day to keep large source lists in a sane heap.
+ */
+public class PersonGenerator {
+
+	private static final String[] LAST_NAMES = { "SMITH", "JOHNSON",
+			"WILLIAMS", "BROWN", "JONES", "GARCIA", "MILLER", "DAVIS",
+			"RODRIGUEZ", "MARTINEZ", "HERNANDEZ", "LOPEZ", "GONZALEZ",
+			"WILSON", "ANDERSON", "THOMAS", "TAYLOR", "MOORE", "JACKSON",
+			"MARTIN", "LEE", "PEREZ", "THOMPSON", "WHITE", "HARRIS",
+			"SANCHEZ", "CLARK", "RAMIREZ", "LEWIS", "ROBINSON", "WALKER",
+			"YOUNG", "ALLEN", "KING", "WRIGHT", "SCOTT", "TORRES", "NGUYEN",
+			"HILL", "FLORES", "GREEN", "ADAMS", "NELSON", "BAKER", "HALL",
+			"RIVERA", "CAMPBELL", "MITCHELL", "CARTER", "ROBERTS", "CAGEY",
+			"MCNICKOLS", "OCONNOR", "DE LA CRUZ", "VAN DYKE", "KOWALSKI",
+			"SCHMIDT", "MUELLER", "NOVAK", "OKAFOR" };
+
+	private static final String[] MALE_NAMES = { "JAMES", "ROBERT", "JOHN",
+			"MICHAEL", "DAVID", "WILLIAM", "RICHARD", "JOSEPH", "THOMAS",
+			"CHARLES", "CHRISTOPHER", "DANIEL", "MATTHEW", "ANTHONY", "MARK",
+			"DONALD", "STEVEN", "PAUL", "ANDREW", "JOSHUA", "NICHOLAS",
+			"NICHOLS", "KEVIN", "BRIAN", "GEORGE", "JOSE", "LUIS", "CARLOS",
+			"AHMED", "WEI" };
+
+	private static final String[] FEMALE_NAMES = { "MARY", "PATRICIA",
+			"JENNIFER", "LINDA", "ELIZABETH", "BARBARA", "SUSAN", "JESSICA",
+			"SARAH", "KAREN", "LISA", "NANCY", "BETTY", "MARGARET", "SANDRA",
+			"ASHLEY", "KIMBERLY", "EMILY", "DONNA", "MICHELLE", "JOANNE",
+			"LAURA", "MARIA", "ANA", "SOFIA", "FATIMA", "MEI", "BABYGIRL",
+			"ANNE", "ANN" };
+
+	private final Random random;
+	private final Map<Integer, Calendar> calendars = new HashMap<Integer, Calendar>();
+
+	/**
+	 * Persons whose names are drawn, null to draw from the lists above.
+	 */
+	private final PersonNameMatcher[] sample;
+
+	/**
+	 * @param seed
+	 */
+	public PersonGenerator(long seed) {
+		this(seed, null);
+	}
+
+	/**
+	 * @param seed
+	 * @param sample
+	 *            persons to draw genders and names from: a gender with its
+	 *            first name from one, a last name from another. Null or empty
+	 *            to draw from common names.
+	 */
+	public PersonGenerator(long seed,
+			List<? extends PersonNameMatcher> sample) {
+		super();
+		this.random = new Random(seed);
+		this.sample = sample == null || sample.isEmpty() ? null : sample
+				.toArray(new PersonNameMatcher[sample.size()]);
+	}
+
+	/**
+	 * @param count
+	 * @return that many new persons
+	 */
+	public List<PersonNameMatcher> persons(int count) {
+		List<PersonNameMatcher> persons = new ArrayList<PersonNameMatcher>(
+				count);
+		for (int i = 0; i < count; i++) {
+			persons.add(person());
+		}
+		return persons;
+	}
+
+	/**
+	 * @return a new person
+	 */
+	public TestPersonNameMatcher person() {
+		if (sample != null) {
+			return sampledPerson();
+		}
+		TestPersonNameMatcher person = new TestPersonNameMatcher();
+		boolean male = random.nextBoolean();
+		person.setGender(male ? "M" : "F");
+		person.setFirstName(pick(male ? MALE_NAMES : FEMALE_NAMES));
+		String lastName = pick(LAST_NAMES);
+		if (random.nextInt(10) == 0) {
+			lastName = lastName + (random.nextBoolean() ? "-" : " ")
+					+ pick(LAST_NAMES);
+		}
+		person.setLastName(lastName);
+		person.setDateOfBirth(dateOfBirth(1930 + random.nextInt(90),
+				random.nextInt(12), 1 + random.nextInt(28)));
+		person.setWeakMatchValue(String.valueOf(random.nextInt(1000000)));
+		return person;
+	}
+
+	private TestPersonNameMatcher sampledPerson() {
+		TestPersonNameMatcher person = new TestPersonNameMatcher();
+		PersonNameMatcher first = sample[random.nextInt(sample.length)];
+		person.setGender(first.getGender());
+		person.setFirstName(first.getFirstName());
+		person.setLastName(sample[random.nextInt(sample.length)]
+				.getLastName());
+		person.setDateOfBirth(dateOfBirth(1930 + random.nextInt(90),
+				random.nextInt(12), 1 + random.nextInt(28)));
+		person.setWeakMatchValue(String.valueOf(random.nextInt(1000000)));
+		return person;
+	}
+
+	/**
+	 * A made up workload against the source persons: three in four queries
+	 * are {@link #variant}s of a source person, the rest persons that aren't
+	 * in it; one in five has an alternate last name. Ceilings are mostly
+	 * between 2 and 8 and most ask for one or a few matches. Arrivals are
+	 * random (Poisson) at the rate.
+	 *
+	 * @param source
+	 *            persons from {@link #persons(int)}
+	 * @param count
+	 *            number of queries
+	 * @param perSecond
+	 *            mean arrival rate
+	 * @return the queries, in arrival order
+	 */
+	public List<RecordedQuery> queries(List<PersonNameMatcher> source,
+			int count, double perSecond) {
+		int[] ceilings = { 0, 2, 2, 4, 4, 4, 6, 6, 8, 12 };
+		int[] maxReturns = { 1, 1, 1, 1, 3, 5, 5, 10, 10, 50 };
+		List<RecordedQuery> queries = new ArrayList<RecordedQuery>(count);
+		double arrival = 0;
+		for (int i = 0; i < count; i++) {
+			arrival += -Math.log(1 - random.nextDouble()) / perSecond * 1e9;
+			TestPersonNameMatcher person = random.nextInt(4) == 0 ? person()
+					: variant((TestPersonNameMatcher) source.get(random
+							.nextInt(source.size())));
+			String alternateLastName = null;
+			if (random.nextInt(5) == 0) {
+				alternateLastName = alternateLastName();
+			}
+			queries.add(new RecordedQuery((long) arrival, 0, new CsvPerson(
+					String.valueOf(i), person.getLastName(), person
+							.getFirstName(), person.getGender(), person
+							.getDateOfBirth(), alternateLastName, null),
+					ceilings[random.nextInt(ceilings.length)],
+					maxReturns[random.nextInt(maxReturns.length)], source
+							.size()));
+		}
+		return queries;
+	}
+
+	/**
+	 * The same person as recorded somewhere else, with about half of them
+	 * carrying one of the usual mistakes.
+	 *
+	 * @param person
+	 * @return a copy, possibly with a mistake
+	 */
+	public TestPersonNameMatcher variant(TestPersonNameMatcher person) {
+		TestPersonNameMatcher variant = new TestPersonNameMatcher();
+		variant.setGender(person.getGender());
+		variant.setFirstName(person.getFirstName());
+		variant.setLastName(person.getLastName());
+		variant.setDateOfBirth(person.getDateOfBirth());
+		variant.setWeakMatchValue(person.getWeakMatchValue());
+
+		Calendar dob = person.getDateOfBirth();
+		int year = dob.get(Calendar.YEAR);
+		int month = dob.get(Calendar.MONTH);
+		int day = dob.get(Calendar.DATE);
+		switch (random.nextInt(10)) {
+		case 0:
+			variant.setFirstName(typo(person.getFirstName()));
+			break;
+		case 1:
+			variant.setLastName(typo(person.getLastName()));
+			break;
+		case 2:
+			int swapped = day % 10 * 10 + day / 10;
+			if (swapped >= 1 && swapped <= 28) {
+				variant.setDateOfBirth(dateOfBirth(year, month, swapped));
+			}
+			break;
+		case 3:
+			variant.setDateOfBirth(dateOfBirth(year + 1, month, day));
+			break;
+		case 4:
+			String[] parts = person.getLastName().split("[- ]");
+			if (parts.length > 1) {
+				variant.setLastName(parts[random.nextInt(parts.length)]);
+			} else {
+				variant.setLastName(typo(person.getLastName()));
+			}
+			break;
+		default:
+			break;
+		}
+		return variant;
+	}
+
+	/**
+	 * @param name
+	 * @return the name with one letter dropped, added or changed
+	 */
+	public String typo(String name) {
+		if (name.length() < 2) {
+			return name + (char) ('A' + random.nextInt(26));
+		}
+		StringBuilder typo = new StringBuilder(name);
+		int at = random.nextInt(name.length());
+		switch (random.nextInt(3)) {
+		case 0:
+			typo.deleteCharAt(at);
+			break;
+		case 1:
+			typo.insert(at, (char) ('A' + random.nextInt(26)));
+			break;
+		default:
+			typo.setCharAt(at, (char) ('A' + random.nextInt(26)));
+			break;
+		}
+		return typo.toString();
+	}
+
+	/**
+	 * @return a last name to use as the alternate last name
+	 */
+	public String alternateLastName() {
+		if (sample != null) {
+			return sample[random.nextInt(sample.length)].getLastName();
+		}
+		return pick(LAST_NAMES);
+	}
+
+	/**
+	 * Skewed towards the front of the list, like real name frequencies.
+	 */
+	private String pick(String[] names) {
+		double r = random.nextDouble();
+		return names[(int) (r * r * names.length)];
+	}
+
+	private Calendar dateOfBirth(int year, int month, int day) {
+		Integer key = (year * 12 + month) * 32 + day;
+		Calendar dob = calendars.get(key);
+		if (dob == null) {
+			dob = Calendar.getInstance();
+			dob.clear();
+			dob.set(year, month, day);
+			dob.getTimeInMillis();
+			calendars.put(key, dob);
+		}
+		return dob;
+	}
+}
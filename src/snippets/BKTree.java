@@ -0,0 +1,140 @@
+package snippets;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Burkhard-Keller tree of names under Levenshtein distance. Each distinct name
+ * is stored once with the ordinals of the source persons carrying it. A search
+ * only descends into children whose edge distance is within the radius of
+ * the distance to their parent, so small radii touch a small part of the
+ * tree. <br>
+ * Not thread safe while adding; searching a fully built tree is.
+ */
+class BKTree {
+
+	private static final class Node {
+		private final String name;
+		private int[] ordinals = new int[1];
+		private int ordinalCount;
+		private int[] distances = new int[0];
+		private Node[] children = new Node[0];
+		private int maxDistance;
+
+		private Node(String name) {
+			this.name = name;
+		}
+
+		private void addOrdinal(int ordinal) {
+			// A person may carry the same name more than once (e.g. as a
+			// whole and as its only part); keep it once.
+			if (ordinalCount > 0 && ordinals[ordinalCount - 1] == ordinal) {
+				return;
+			}
+			if (ordinalCount == ordinals.length) {
+				ordinals = Arrays.copyOf(ordinals, ordinalCount * 2);
+			}
+			ordinals[ordinalCount++] = ordinal;
+		}
+
+		private Node child(int distance) {
+			for (int i = 0; i < distances.length; i++) {
+				if (distances[i] == distance) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private void addChild(int distance, Node child) {
+			distances = Arrays.copyOf(distances, distances.length + 1);
+			children = Arrays.copyOf(children, children.length + 1);
+			distances[distances.length - 1] = distance;
+			children[children.length - 1] = child;
+			maxDistance = Math.max(maxDistance, distance);
+		}
+	}
+
+	private final Map<String, Node> nodes = new HashMap<String, Node>();
+	private Node root;
+
+	/**
+	 * Record that the source person at ordinal carries the name. Ordinals must
+	 * be added in ascending order.
+	 *
+	 * @param name
+	 * @param ordinal
+	 */
+	void add(String name, int ordinal) {
+		Node node = nodes.get(name);
+		if (node == null) {
+			node = new Node(name);
+			nodes.put(name, node);
+			insert(node);
+		}
+		node.addOrdinal(ordinal);
+	}
+
+	private void insert(Node node) {
+		if (root == null) {
+			root = node;
+			return;
+		}
+		Node parent = root;
+		while (true) {
+			int distance = StringUtils.getLevenshteinDistance(node.name,
+					parent.name);
+			Node child = parent.child(distance);
+			if (child == null) {
+				parent.addChild(distance, node);
+				return;
+			}
+			parent = child;
+		}
+	}
+
+	/**
+	 * @return the number of distinct names
+	 */
+	int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Set the ordinals of every source person carrying a name within the
+	 * radius of the query.
+	 *
+	 * @param query
+	 * @param radius
+	 *            Largest distance of interest.
+	 * @param found
+	 *            ordinals of the matching persons are added here
+	 */
+	void search(String query, int radius, OrdinalList found) {
+		if (root != null) {
+			search(root, query, radius, found);
+		}
+	}
+
+	private static void search(Node node, String query, int radius,
+			OrdinalList found) {
+		// Nothing under this node can be reached once the distance is
+		// beyond the furthest child plus the radius
+		int distance = StringUtils.getLevenshteinDistance(query, node.name,
+				node.maxDistance + radius);
+		if (distance < 0) {
+			return;
+		}
+		if (distance <= radius) {
+			found.addAll(node.ordinals, node.ordinalCount);
+		}
+		for (int i = 0; i < node.distances.length; i++) {
+			if (Math.abs(node.distances[i] - distance) <= radius) {
+				search(node.children[i], query, radius, found);
+			}
+		}
+	}
+}
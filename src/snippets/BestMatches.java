@@ -0,0 +1,259 @@
+package snippets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the best (lowest confidence) matches seen so far, never more than
+ * maxReturns of them. Matches above the ceiling are dropped on the way in.
+ * Equal confidences are ordered by their position in the source persons, the
+ * same order a stable sort of every candidate would give. <br>
+ * The matches are kept in a heap of primitive arrays, worst first, so
+ * offering a candidate allocates nothing once the heap has grown to
+ * maxReturns. <br>
+ * Not thread safe; parallel callers collect separately and {@link #merge}.
+ */
+class BestMatches {
+
+	/**
+	 * Best match first: lowest confidence, then earliest in the source.
+	 */
+	private static final Comparator<PersonConfidence> BEST_FIRST = new Comparator<PersonConfidence>() {
+		@Override
+		public int compare(PersonConfidence o1, PersonConfidence o2) {
+			int c = o1.getConfidence().compareTo(o2.getConfidence());
+			if (c == 0) {
+				c = o1.getOrdinal() < o2.getOrdinal() ? -1 : (o1
+						.getOrdinal() == o2.getOrdinal() ? 0 : 1);
+			}
+			return c;
+		}
+	};
+
+	private final int ceiling;
+	private final int maxReturns;
+
+	private PersonNameMatcher[] persons;
+	private int[] confidences;
+	private int[] ordinals;
+	private int size;
+
+	/**
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed.
+	 * @param maxReturns
+	 *            Maximum number of persons to keep.
+	 */
+	BestMatches(int ceiling, int maxReturns) {
+		super();
+		this.ceiling = ceiling;
+		this.maxReturns = maxReturns;
+		int capacity = Math.min(maxReturns, 64);
+		this.persons = new PersonNameMatcher[capacity];
+		this.confidences = new int[capacity];
+		this.ordinals = new int[capacity];
+	}
+
+	/**
+	 * @return the highest confidence kept
+	 */
+	int getCeiling() {
+		return ceiling;
+	}
+
+	/**
+	 * @return the most matches kept
+	 */
+	int getMaxReturns() {
+		return maxReturns;
+	}
+
+	/**
+	 * Highest confidence a candidate that comes after every candidate offered
+	 * so far can have and still be kept. -1 when nothing more can be kept.
+	 *
+	 * @return the bound to score the next candidate against.
+	 */
+	int bound() {
+		if (size < maxReturns) {
+			return ceiling;
+		}
+		return confidences[0] - 1;
+	}
+
+	/**
+	 * Highest confidence a candidate can have and still be kept, whatever
+	 * its place among the candidates offered so far. -1 when nothing more
+	 * can be kept.
+	 *
+	 * @param ordinal
+	 *            position of the candidate in the source persons
+	 * @return the bound to score the candidate against.
+	 */
+	int bound(int ordinal) {
+		if (size < maxReturns) {
+			return ceiling;
+		}
+		return ordinal < ordinals[0] ? confidences[0] : confidences[0] - 1;
+	}
+
+	/**
+	 * Keep the candidate if it is among the best so far.
+	 *
+	 * @param candidate
+	 * @param confidence
+	 * @param ordinal
+	 *            position of the candidate in the source persons
+	 */
+	void offer(PersonNameMatcher candidate, int confidence, int ordinal) {
+		if (confidence > ceiling) {
+			return;
+		}
+		if (size < maxReturns) {
+			if (size == persons.length) {
+				int capacity = (int) Math.min(maxReturns, 2L * size);
+				persons = Arrays.copyOf(persons, capacity);
+				confidences = Arrays.copyOf(confidences, capacity);
+				ordinals = Arrays.copyOf(ordinals, capacity);
+			}
+			set(size, candidate, confidence, ordinal);
+			siftUp(size++);
+		} else if (worse(confidences[0], ordinals[0], confidence, ordinal)) {
+			set(0, candidate, confidence, ordinal);
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * @return true if the first match is worse than the second
+	 */
+	private static boolean worse(int confidence, int ordinal,
+			int otherConfidence, int otherOrdinal) {
+		return confidence > otherConfidence
+				|| (confidence == otherConfidence && ordinal > otherOrdinal);
+	}
+
+	private boolean worse(int i, int j) {
+		return worse(confidences[i], ordinals[i], confidences[j], ordinals[j]);
+	}
+
+	private void set(int i, PersonNameMatcher candidate, int confidence,
+			int ordinal) {
+		persons[i] = candidate;
+		confidences[i] = confidence;
+		ordinals[i] = ordinal;
+	}
+
+	private void swap(int i, int j) {
+		PersonNameMatcher person = persons[i];
+		persons[i] = persons[j];
+		persons[j] = person;
+		int confidence = confidences[i];
+		confidences[i] = confidences[j];
+		confidences[j] = confidence;
+		int ordinal = ordinals[i];
+		ordinals[i] = ordinals[j];
+		ordinals[j] = ordinal;
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!worse(i, parent)) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int worst = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && worse(left, worst)) {
+				worst = left;
+			}
+			if (right < size && worse(right, worst)) {
+				worst = right;
+			}
+			if (worst == i) {
+				return;
+			}
+			swap(i, worst);
+			i = worst;
+		}
+	}
+
+	/**
+	 * Add the matches kept by another collector for the same query.
+	 *
+	 * @param other
+	 */
+	void merge(BestMatches other) {
+		merge(other, 0);
+	}
+
+	/**
+	 * Add the matches kept by another collector for the same query that
+	 * numbered its candidates from 0 instead of from ordinalOffset, e.g. the
+	 * later half of a split source.
+	 *
+	 * @param other
+	 * @param ordinalOffset
+	 *            ordinal of the other collector's first candidate
+	 */
+	void merge(BestMatches other, int ordinalOffset) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.persons[i], other.confidences[i], other.ordinals[i]
+					+ ordinalOffset);
+		}
+	}
+
+	/**
+	 * Add the matches kept by another collector for the same query that
+	 * scored only some of the candidates, numbering them from 0, e.g. a
+	 * shard of the source.
+	 *
+	 * @param other
+	 * @param ordinals
+	 *            ordinal of each of the other collector's candidates,
+	 *            ascending
+	 */
+	void merge(BestMatches other, int[] ordinals) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.persons[i], other.confidences[i],
+					ordinals[other.ordinals[i]]);
+		}
+	}
+
+	/**
+	 * @return the kept matches, best first.
+	 */
+	List<PersonConfidence> getMatches() {
+		List<PersonConfidence> result = new ArrayList<PersonConfidence>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(new PersonConfidence(persons[i], confidences[i],
+					ordinals[i]));
+		}
+		Collections.sort(result, BEST_FIRST);
+		return result;
+	}
+
+	/**
+	 * @return the kept persons, best first.
+	 */
+	List<PersonNameMatcher> getPersons() {
+		List<PersonConfidence> sorted = getMatches();
+		List<PersonNameMatcher> result = new ArrayList<PersonNameMatcher>(
+				sorted.size());
+		for (PersonConfidence match : sorted) {
+			result.add(match.getPerson());
+		}
+		return result;
+	}
+}
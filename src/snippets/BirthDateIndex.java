@@ -0,0 +1,134 @@
+package snippets;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepared source persons with a compressed bitmap (see
+ * {@link OrdinalBitmap}) of their ordinals for each year, month and day of
+ * birth and each gender, so a match can work out which candidates its date
+ * of birth and gender rules leave able to get under the ceiling with a few
+ * intersections and unions, and score the names of only those. <br>
+ * Under four confident increments only candidates born on the person's day
+ * of the month can match: born on the same date with the same gender, on the
+ * same month and day, or on the same year and day, each of those outcomes
+ * counting only while its threshold still lets it get under the ceiling. At
+ * higher ceilings every candidate can match and all of them are scanned, as
+ * {@link NameMatcher#fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+ * does. The results are the same either way. <br>
+ * Immutable once built, so it can be shared by any number of threads.
+ */
+public class BirthDateIndex {
+
+	final PreparedCandidates candidates;
+
+	private final Map<Integer, OrdinalBitmap> years = new HashMap<Integer, OrdinalBitmap>();
+	private final OrdinalBitmap[] months;
+	private final OrdinalBitmap[] days;
+	private final OrdinalBitmap[] genders;
+
+	/**
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 */
+	public BirthDateIndex(List<PersonNameMatcher> sourcePersons) {
+		this(new PreparedCandidates(sourcePersons));
+	}
+
+	/**
+	 * @param candidates
+	 *            - {@link PreparedCandidates} the Persons to match against
+	 */
+	public BirthDateIndex(PreparedCandidates candidates) {
+		super();
+		this.candidates = candidates;
+		Map<Integer, OrdinalList> building = new HashMap<Integer, OrdinalList>();
+		for (int i = 0; i < candidates.size(); i++) {
+			OrdinalList year = building.get(candidates.years[i]);
+			if (year == null) {
+				year = new OrdinalList();
+				building.put(candidates.years[i], year);
+			}
+			year.add(i);
+		}
+		for (Map.Entry<Integer, OrdinalList> entry : building.entrySet()) {
+			years.put(entry.getKey(), bitmap(entry.getValue()));
+		}
+		this.months = bitmaps(candidates.months, 13);
+		this.days = bitmaps(candidates.days, 32);
+		int genderCount = 0;
+		for (byte gender : candidates.genders) {
+			genderCount = Math.max(genderCount, gender + 1);
+		}
+		int[] codes = new int[candidates.size()];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = candidates.genders[i];
+		}
+		this.genders = bitmaps(codes, genderCount);
+	}
+
+	private static OrdinalBitmap bitmap(OrdinalList ordinals) {
+		int[] ascending = ordinals.toSortedArray();
+		return OrdinalBitmap.of(ascending, ascending.length);
+	}
+
+	/**
+	 * @param values
+	 *            by ordinal, each from 0 to count - 1
+	 * @return for each value, the ordinals that have it
+	 */
+	private static OrdinalBitmap[] bitmaps(int[] values, int count) {
+		OrdinalList[] building = new OrdinalList[count];
+		for (int i = 0; i < values.length; i++) {
+			if (building[values[i]] == null) {
+				building[values[i]] = new OrdinalList();
+			}
+			building[values[i]].add(i);
+		}
+		OrdinalBitmap[] bitmaps = new OrdinalBitmap[count];
+		for (int value = 0; value < count; value++) {
+			bitmaps[value] = building[value] == null ? OrdinalBitmap.EMPTY
+					: bitmap(building[value]);
+		}
+		return bitmaps;
+	}
+
+	/**
+	 * @return the number of source persons
+	 */
+	public int size() {
+		return candidates.size();
+	}
+
+	/**
+	 * @return the prepared source persons the index is over
+	 */
+	public PreparedCandidates getCandidates() {
+		return candidates;
+	}
+
+	OrdinalBitmap year(int year) {
+		OrdinalBitmap ordinals = years.get(year);
+		return ordinals == null ? OrdinalBitmap.EMPTY : ordinals;
+	}
+
+	OrdinalBitmap month(int month) {
+		return month < 0 || month >= months.length ? OrdinalBitmap.EMPTY
+				: months[month];
+	}
+
+	OrdinalBitmap day(int day) {
+		return day < 0 || day >= days.length ? OrdinalBitmap.EMPTY
+				: days[day];
+	}
+
+	/**
+	 * @param gender
+	 *            code from {@link PreparedCandidates#genderCode(String)}
+	 */
+	OrdinalBitmap gender(int gender) {
+		return gender < 0 || gender >= genders.length ? OrdinalBitmap.EMPTY
+				: genders[gender];
+	}
+}
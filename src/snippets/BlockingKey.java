@@ -0,0 +1,29 @@
+package snippets;
+
+/**
+ * Ways {@link PersonIndex} can group source persons. A candidate is scored if
+ * it shares any enabled key with the person; the more keys enabled the closer
+ * the results get to a full scan of the source persons, at the cost of
+ * scoring more candidates.
+ */
+public enum BlockingKey {
+
+	/**
+	 * Soundex of the last name and of each of its hyphenated parts. The
+	 * alternate last name is looked up the same way.
+	 */
+	LAST_NAME_SOUNDEX,
+
+	/**
+	 * Metaphone of the last name and of each of its hyphenated parts. The
+	 * alternate last name is looked up the same way.
+	 */
+	LAST_NAME_METAPHONE,
+
+	/**
+	 * First letter of the first name together with the year of birth.
+	 * Catches last names that changed completely (marriage, typos in the
+	 * first letters).
+	 */
+	FIRST_INITIAL_BIRTH_YEAR
+}
@@ -0,0 +1,96 @@
+package snippets;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.codec.language.Metaphone;
+import org.apache.commons.codec.language.Soundex;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Computes the blocks a person falls in for a set of {@link BlockingKey}s.
+ * Each block is a string: the key's prefix ("S", "M" or "Y") followed by its
+ * code. <br>
+ * <b>Important</b> <br>
+ * This depends on org.apache.commons.codec.language.Soundex and
+ * org.apache.commons.codec.language.Metaphone
+ */
+final class BlockingKeys {
+
+	private final Soundex soundex = new Soundex();
+	private final Metaphone metaphone = new Metaphone();
+
+	private final Set<BlockingKey> keys;
+
+	BlockingKeys(Set<BlockingKey> keys) {
+		super();
+		this.keys = EnumSet.noneOf(BlockingKey.class);
+		this.keys.addAll(keys);
+	}
+
+	Set<BlockingKey> getKeys() {
+		return keys;
+	}
+
+	boolean isEmpty() {
+		return keys.isEmpty();
+	}
+
+	Set<String> blocks(String lastName, String firstName,
+			Calendar dateOfBirth, String alternateLastName) {
+		Set<String> result = new HashSet<String>();
+
+		List<String> lastNames = new ArrayList<String>();
+		addWithParts(lastNames, lastName);
+		if (StringUtils.isNotEmpty(alternateLastName)) {
+			addWithParts(lastNames, alternateLastName);
+		}
+		for (String name : lastNames) {
+			if (keys.contains(BlockingKey.LAST_NAME_SOUNDEX)) {
+				String code = encodeSoundex(name);
+				if (StringUtils.isNotEmpty(code)) {
+					result.add("S" + code);
+				}
+			}
+			if (keys.contains(BlockingKey.LAST_NAME_METAPHONE)) {
+				String code = metaphone.metaphone(name);
+				if (StringUtils.isNotEmpty(code)) {
+					result.add("M" + code);
+				}
+			}
+		}
+
+		if (keys.contains(BlockingKey.FIRST_INITIAL_BIRTH_YEAR)
+				&& StringUtils.isNotEmpty(firstName) && dateOfBirth != null) {
+			result.add("Y" + Character.toUpperCase(firstName.charAt(0))
+					+ dateOfBirth.get(Calendar.YEAR));
+		}
+		return result;
+	}
+
+	private static void addWithParts(List<String> names, String name) {
+		if (name == null) {
+			return;
+		}
+		names.add(name);
+		for (String part : NameMatcher.lastNameParts(name)) {
+			names.add(part);
+		}
+	}
+
+	/**
+	 * Soundex only maps the English alphabet and refuses anything else (e.g.
+	 * accented letters); those names are left out of the soundex blocks.
+	 */
+	private String encodeSoundex(String name) {
+		try {
+			return soundex.soundex(name);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
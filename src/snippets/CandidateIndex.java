@@ -0,0 +1,36 @@
+package snippets;
+
+/**
+ * Source persons prepared for {@link NameMatcher}, able to narrow the
+ * candidates for a person down from every source person to the ones that may
+ * match. Candidates are identified by their ordinal, their position in the
+ * source persons the index was built from.
+ */
+public interface CandidateIndex {
+
+	/**
+	 * @return the number of source persons
+	 */
+	public int size();
+
+	/**
+	 * @param ordinal
+	 *            position in the source persons
+	 * @return the source person at that position
+	 */
+	public PersonNameMatcher getPerson(int ordinal);
+
+	/**
+	 * Candidates worth scoring against the person.
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed.
+	 * @return ordinals of the candidates, in ascending order
+	 */
+	public int[] candidates(PersonNameMatcher person,
+			String alternateLastName, int ceiling);
+}
@@ -0,0 +1,519 @@
+package snippets;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matches every claim in a CSV file against the members in another and
+ * writes the matches to a third, in three overlapping stages: one thread
+ * parses the claims in chunks, a pool scores each chunk against the
+ * prepared members in one pass, and the calling thread writes the chunks
+ * back in claim order. At most chunksInFlight chunks are between the parser
+ * and the writer, so memory does not grow with the claims file; the members
+ * are held in memory as {@link PreparedCandidates}. <br>
+ * Both input files start with a header naming their columns, in any order
+ * and any case: lastName, firstName, gender and dateOfBirth (yyyy-MM-dd)
+ * are required; id, alternateLastName and weakMatch are optional. A record
+ * without an id is known by its record number, from 1. Persons with equal
+ * weakMatch values weakly match. <br>
+ * The output has the header claimId,memberId,confidence and one line per
+ * match, best first; a claim without matches gets one line with no member
+ * and no confidence.
+ */
+public class CsvMatchPipeline {
+
+	/**
+	 * The columns a person is read from.
+	 */
+	private static final String ID = "id";
+	private static final String LAST_NAME = "lastname";
+	private static final String FIRST_NAME = "firstname";
+	private static final String GENDER = "gender";
+	private static final String DATE_OF_BIRTH = "dateofbirth";
+	private static final String ALTERNATE_LAST_NAME = "alternatelastname";
+	private static final String WEAK_MATCH = "weakmatch";
+
+	private final NameMatcher matcher;
+	private final int ceiling;
+	private final int maxReturns;
+	private final int threads;
+	private final int chunkSize;
+	private final int chunksInFlight;
+
+	/**
+	 * What a run did, and how fast each stage went. A stage's rate is the
+	 * claims it handled per second it was busy, not counting time spent
+	 * waiting on the other stages.
+	 */
+	public static final class Report {
+		private final long claims;
+		private final long matches;
+		private final long elapsedNanos;
+		private final long parseNanos;
+		private final long scoreNanos;
+		private final long writeNanos;
+
+		private Report(long claims, long matches, long elapsedNanos,
+				long parseNanos, long scoreNanos, long writeNanos) {
+			this.claims = claims;
+			this.matches = matches;
+			this.elapsedNanos = elapsedNanos;
+			this.parseNanos = parseNanos;
+			this.scoreNanos = scoreNanos;
+			this.writeNanos = writeNanos;
+		}
+
+		/**
+		 * @return the number of claims read
+		 */
+		public long getClaims() {
+			return claims;
+		}
+
+		/**
+		 * @return the number of matches written
+		 */
+		public long getMatches() {
+			return matches;
+		}
+
+		/**
+		 * @return how long the run took
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * @return claims parsed per second
+		 */
+		public double getParseRate() {
+			return rate(parseNanos);
+		}
+
+		/**
+		 * @return claims scored per second, by one scoring thread
+		 */
+		public double getScoreRate() {
+			return rate(scoreNanos);
+		}
+
+		/**
+		 * @return claims written per second
+		 */
+		public double getWriteRate() {
+			return rate(writeNanos);
+		}
+
+		/**
+		 * @return claims per second through the whole pipeline
+		 */
+		public double getRate() {
+			return rate(elapsedNanos);
+		}
+
+		private double rate(long nanos) {
+			return nanos == 0 ? 0 : claims * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "claims=%d matches=%d "
+					+ "claims/s: parse=%.0f score=%.0f write=%.0f total=%.0f",
+					claims, matches, getParseRate(), getScoreRate(),
+					getWriteRate(), getRate());
+		}
+	}
+
+	/**
+	 * Scoring on one thread per processor, in chunks of 64 claims with at
+	 * most four chunks per thread in flight.
+	 *
+	 * @param matcher
+	 *            - {@link NameMatcher} doing the matches
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of matches per claim (0 or less defaults to
+	 *            1).
+	 */
+	public CsvMatchPipeline(NameMatcher matcher, int ceiling, int maxReturns) {
+		this(matcher, ceiling, maxReturns, Runtime.getRuntime()
+				.availableProcessors(), 64, 4 * Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * @param matcher
+	 *            - {@link NameMatcher} doing the matches
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of matches per claim (0 or less defaults to
+	 *            1).
+	 * @param threads
+	 *            number of scoring threads
+	 * @param chunkSize
+	 *            claims scored together in one pass over the members
+	 * @param chunksInFlight
+	 *            most chunks parsed and not yet written
+	 */
+	public CsvMatchPipeline(NameMatcher matcher, int ceiling, int maxReturns,
+			int threads, int chunkSize, int chunksInFlight) {
+		super();
+		if (threads < 1 || chunkSize < 1 || chunksInFlight < 1) {
+			throw new IllegalArgumentException(
+					"Threads, chunk size and chunks in flight must be at least 1");
+		}
+		this.matcher = matcher;
+		this.ceiling = Math.max(ceiling, 0);
+		this.maxReturns = Math.max(maxReturns, 1);
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+		this.chunksInFlight = chunksInFlight;
+	}
+
+	/**
+	 * Read every person in a CSV file.
+	 *
+	 * @param file
+	 *            UTF-8, with a header
+	 * @return List<{@link PersonNameMatcher}> the {@link CsvPerson}s, in file
+	 *         order
+	 * @throws IOException
+	 *             if reading fails or a record is malformed
+	 */
+	public static List<PersonNameMatcher> readPersons(Path file)
+			throws IOException {
+		List<PersonNameMatcher> persons = new ArrayList<PersonNameMatcher>();
+		CsvReader in = new CsvReader(Files.newBufferedReader(file,
+				StandardCharsets.UTF_8));
+		try {
+			Columns columns = new Columns(file, in.next());
+			CsvPerson person;
+			while ((person = columns.read(in, persons.size() + 1)) != null) {
+				persons.add(person);
+			}
+		} finally {
+			in.close();
+		}
+		return persons;
+	}
+
+	/**
+	 * Match every claim against the members.
+	 *
+	 * @param members
+	 *            UTF-8 CSV, with a header
+	 * @param claims
+	 *            UTF-8 CSV, with a header
+	 * @param matches
+	 *            written as UTF-8 CSV, replacing any file there
+	 * @return what the run did
+	 * @throws IOException
+	 *             if reading or writing fails or a record is malformed
+	 */
+	public Report run(Path members, Path claims, Path matches)
+			throws IOException {
+		return run(new PreparedCandidates(readPersons(members)), claims,
+				matches);
+	}
+
+	/**
+	 * Match every claim against members already prepared, e.g. from
+	 * {@link #readPersons(Path)}.
+	 *
+	 * @see #run(Path, Path, Path)
+	 */
+	public Report run(final PreparedCandidates members, Path claims,
+			Path matches) throws IOException {
+		long start = System.nanoTime();
+		final AtomicLong parseNanos = new AtomicLong();
+		final AtomicLong scoreNanos = new AtomicLong();
+		long writeNanos = 0;
+		long claimCount = 0;
+		long matchCount = 0;
+
+		// Opened before the threads start, so failing to open it leaves
+		// none behind
+		BufferedWriter out = Files.newBufferedWriter(matches,
+				StandardCharsets.UTF_8);
+
+		// Chunks in claim order, each scored when its future is done; the
+		// parser blocks once the writer is chunksInFlight chunks behind
+		final BlockingQueue<Future<Chunk>> chunks = new ArrayBlockingQueue<Future<Chunk>>(
+				chunksInFlight);
+		final ExecutorService scorers = Executors.newFixedThreadPool(threads,
+				daemonThreads("csv-scorer"));
+		ExecutorService parser = Executors
+				.newSingleThreadExecutor(daemonThreads("csv-parser"));
+		final Path claimsFile = claims;
+		Future<Void> parsing = parser.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					parse(claimsFile, members, chunks, scorers, parseNanos,
+							scoreNanos);
+				} catch (InterruptedException e) {
+					// Cancelled once the writer is done, failed or not
+					throw e;
+				} catch (Exception e) {
+					CompletableFuture<Chunk> failed = new CompletableFuture<Chunk>();
+					failed.completeExceptionally(e);
+					chunks.put(failed);
+				}
+				return null;
+			}
+		});
+
+		try {
+			out.write("claimId,memberId,confidence");
+			out.newLine();
+			while (true) {
+				Chunk chunk = chunks.take().get();
+				if (chunk == null) {
+					break;
+				}
+				long writeStart = System.nanoTime();
+				for (int i = 0; i < chunk.claims.size(); i++) {
+					String claimId = CsvReader.quote(chunk.claims.get(i)
+							.getId());
+					List<PersonConfidence> claimMatches = chunk.matches.get(i);
+					if (claimMatches.isEmpty()) {
+						out.write(claimId);
+						out.write(",,");
+						out.newLine();
+					}
+					for (PersonConfidence match : claimMatches) {
+						out.write(claimId);
+						out.write(',');
+						out.write(CsvReader.quote(((CsvPerson) match
+								.getPerson()).getId()));
+						out.write(',');
+						out.write(String.valueOf(match.getConfidence()));
+						out.newLine();
+					}
+					matchCount += claimMatches.size();
+				}
+				claimCount += chunk.claims.size();
+				writeNanos += System.nanoTime() - writeStart;
+			}
+			out.flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while matching");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			parsing.cancel(true);
+			parser.shutdownNow();
+			scorers.shutdownNow();
+			out.close();
+		}
+
+		return new Report(claimCount, matchCount, System.nanoTime() - start,
+				parseNanos.get(), scoreNanos.get(), writeNanos);
+	}
+
+	/**
+	 * Daemon threads, so a run that fails can't keep the JVM alive.
+	 */
+	private static ThreadFactory daemonThreads(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name + "-"
+						+ count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Claims parsed together, and once scored their matches.
+	 */
+	private static final class Chunk {
+		private final List<CsvPerson> claims;
+		private List<List<PersonConfidence>> matches;
+
+		private Chunk(List<CsvPerson> claims) {
+			this.claims = claims;
+		}
+	}
+
+	/**
+	 * Parse the claims a chunk at a time, handing each to the scorers, and
+	 * end with a chunk that is null.
+	 */
+	private void parse(Path file, final PreparedCandidates members,
+			BlockingQueue<Future<Chunk>> chunks, ExecutorService scorers,
+			AtomicLong parseNanos, final AtomicLong scoreNanos)
+			throws IOException, InterruptedException {
+		long parseStart = System.nanoTime();
+		CsvReader in = new CsvReader(Files.newBufferedReader(file,
+				StandardCharsets.UTF_8));
+		try {
+			parseChunks(file, in, members, chunks, scorers, parseNanos,
+					scoreNanos, parseStart);
+		} finally {
+			in.close();
+		}
+	}
+
+	private void parseChunks(Path file, CsvReader in,
+			final PreparedCandidates members,
+			BlockingQueue<Future<Chunk>> chunks, ExecutorService scorers,
+			AtomicLong parseNanos, final AtomicLong scoreNanos,
+			long parseStart) throws IOException, InterruptedException {
+		Columns columns = new Columns(file, in.next());
+		long record = 0;
+		while (true) {
+			List<CsvPerson> claims = new ArrayList<CsvPerson>(chunkSize);
+			CsvPerson claim = null;
+			while (claims.size() < chunkSize
+					&& (claim = columns.read(in, ++record)) != null) {
+				claims.add(claim);
+			}
+			if (!claims.isEmpty()) {
+				final Chunk chunk = new Chunk(claims);
+				parseNanos.addAndGet(System.nanoTime() - parseStart);
+				chunks.put(scorers.submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() {
+						long scoreStart = System.nanoTime();
+						score(chunk, members);
+						scoreNanos.addAndGet(System.nanoTime() - scoreStart);
+						return chunk;
+					}
+				}));
+				parseStart = System.nanoTime();
+			}
+			if (claim == null) {
+				break;
+			}
+		}
+		parseNanos.addAndGet(System.nanoTime() - parseStart);
+		chunks.put(CompletableFuture.<Chunk> completedFuture(null));
+	}
+
+	private void score(Chunk chunk, PreparedCandidates members) {
+		int size = chunk.claims.size();
+		PersonNameMatcher[] persons = new PersonNameMatcher[size];
+		String[] alternateLastNames = new String[size];
+		int[] ceilings = new int[size];
+		int[] maxReturnses = new int[size];
+		for (int i = 0; i < size; i++) {
+			CsvPerson claim = chunk.claims.get(i);
+			persons[i] = claim;
+			alternateLastNames[i] = claim.getAlternateLastName();
+			ceilings[i] = ceiling;
+			maxReturnses[i] = maxReturns;
+		}
+		chunk.matches = matcher.fuzzyNameMatchGroup(persons,
+				alternateLastNames, ceilings, maxReturnses, members);
+	}
+
+	/**
+	 * Where each field of a person is in the records of one file.
+	 */
+	private static final class Columns {
+		private final Path file;
+		private final int columnCount;
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+		private Columns(Path file, String[] header) throws IOException {
+			this.file = file;
+			if (header == null) {
+				throw new IOException(file + ": no header");
+			}
+			this.columnCount = header.length;
+			for (int i = 0; i < header.length; i++) {
+				indexes.put(header[i].trim().toLowerCase(Locale.ROOT), i);
+			}
+			for (String required : new String[] { LAST_NAME, FIRST_NAME,
+					GENDER, DATE_OF_BIRTH }) {
+				if (!indexes.containsKey(required)) {
+					throw new IOException(file + ": no " + required
+							+ " column");
+				}
+			}
+		}
+
+		/**
+		 * @param record
+		 *            number of the record, the id if it has none
+		 * @return the next person, or null at the end
+		 */
+		private CsvPerson read(CsvReader in, long record) throws IOException {
+			long line = in.getLine();
+			String[] fields = in.next();
+			while (fields != null && fields.length == 1
+					&& fields[0].isEmpty()) {
+				// Blank line
+				line = in.getLine();
+				fields = in.next();
+			}
+			if (fields == null) {
+				return null;
+			}
+			if (fields.length != columnCount) {
+				throw new IOException(file + " line " + line + ": "
+						+ fields.length + " fields, expected " + columnCount);
+			}
+			try {
+				String id = field(fields, ID);
+				return new CsvPerson(id == null ? String.valueOf(record) : id,
+						field(fields, LAST_NAME), field(fields, FIRST_NAME),
+						field(fields, GENDER),
+						CsvPerson.parseDate(field(fields, DATE_OF_BIRTH)),
+						emptyToNull(field(fields, ALTERNATE_LAST_NAME)),
+						emptyToNull(field(fields, WEAK_MATCH)));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(file + " line " + line + ": "
+						+ e.getMessage());
+			}
+		}
+
+		private String field(String[] fields, String column) {
+			Integer index = indexes.get(column);
+			return index == null ? null : fields[index];
+		}
+
+		private static String emptyToNull(String value) {
+			return value == null || value.isEmpty() ? null : value;
+		}
+	}
+}
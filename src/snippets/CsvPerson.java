@@ -0,0 +1,137 @@
+package snippets;
+
+import java.util.Calendar;
+
+/**
+ * A person read from a CSV extract by {@link CsvMatchPipeline}: the fields
+ * {@link NameMatcher} reads, the record's id, and for claims the alternate
+ * last name. Persons weakly match when they carry the same weak match value.
+ * Immutable.
+ */
+public final class CsvPerson implements PersonNameMatcher {
+
+	private final String id;
+	private final String lastName;
+	private final String firstName;
+	private final String gender;
+	private final Calendar dateOfBirth;
+	private final String alternateLastName;
+	private final String weakMatchValue;
+
+	/**
+	 * @param id
+	 * @param lastName
+	 * @param firstName
+	 * @param gender
+	 * @param dateOfBirth
+	 * @param alternateLastName
+	 *            null for none
+	 * @param weakMatchValue
+	 *            null to never weakly match
+	 */
+	public CsvPerson(String id, String lastName, String firstName,
+			String gender, Calendar dateOfBirth, String alternateLastName,
+			String weakMatchValue) {
+		super();
+		this.id = id;
+		this.lastName = lastName;
+		this.firstName = firstName;
+		this.gender = gender;
+		this.dateOfBirth = dateOfBirth;
+		this.alternateLastName = alternateLastName;
+		this.weakMatchValue = weakMatchValue;
+	}
+
+	/**
+	 * @return the id
+	 */
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public String getLastName() {
+		return lastName;
+	}
+
+	@Override
+	public String getFirstName() {
+		return firstName;
+	}
+
+	@Override
+	public String getGender() {
+		return gender;
+	}
+
+	@Override
+	public Calendar getDateOfBirth() {
+		return dateOfBirth;
+	}
+
+	/**
+	 * @return the alternate last name, or null if there is none
+	 */
+	public String getAlternateLastName() {
+		return alternateLastName;
+	}
+
+	/**
+	 * @return the weak match value, or null if there is none
+	 */
+	public String getWeakMatchValue() {
+		return weakMatchValue;
+	}
+
+	@Override
+	public boolean weakMatch(Object candidate) {
+		return weakMatchValue != null
+				&& candidate instanceof CsvPerson
+				&& weakMatchValue
+						.equals(((CsvPerson) candidate).weakMatchValue);
+	}
+
+	/**
+	 * @param date
+	 *            as yyyy-MM-dd
+	 * @return the date, with no time of day
+	 * @throws IllegalArgumentException
+	 *             if it is not a date written that way
+	 */
+	static Calendar parseDate(String date) {
+		String[] fields = date.trim().split("-");
+		if (fields.length != 3) {
+			throw new IllegalArgumentException("Not a yyyy-MM-dd date: "
+					+ date);
+		}
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.setLenient(false);
+		try {
+			calendar.set(Integer.parseInt(fields[0]),
+					Integer.parseInt(fields[1]) - 1,
+					Integer.parseInt(fields[2]));
+			calendar.getTimeInMillis();
+		} catch (IllegalArgumentException e) {
+			// Including NumberFormatException
+			throw new IllegalArgumentException("Not a yyyy-MM-dd date: "
+					+ date);
+		}
+		return calendar;
+	}
+
+	/**
+	 * @param calendar
+	 * @return the date as yyyy-MM-dd
+	 */
+	static String formatDate(Calendar calendar) {
+		return String.format("%04d-%02d-%02d", calendar.get(Calendar.YEAR),
+				calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DATE));
+	}
+
+	@Override
+	public String toString() {
+		return id + " " + lastName + ", " + firstName + " " + gender + " "
+				+ (dateOfBirth == null ? null : formatDate(dateOfBirth));
+	}
+}
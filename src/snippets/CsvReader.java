@@ -0,0 +1,124 @@
+package snippets;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma separated records (RFC 4180): fields may be quoted with '"',
+ * a quote within a quoted field is doubled, and quoted fields may hold
+ * commas and line breaks. Records end with CRLF or LF. Reads through a
+ * buffer of its own, so the reader need not be buffered.
+ */
+final class CsvReader implements Closeable {
+
+	private final Reader in;
+	private final char[] buffer = new char[64 * 1024];
+	private int position;
+	private int limit;
+	private long line = 1;
+
+	CsvReader(Reader in) {
+		super();
+		this.in = in;
+	}
+
+	/**
+	 * @return the next record's fields, or null at the end
+	 * @throws IOException
+	 *             if reading fails or a quoted field isn't closed
+	 */
+	String[] next() throws IOException {
+		if (!fill()) {
+			return null;
+		}
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean wasQuoted = false;
+		while (fill()) {
+			char c = buffer[position++];
+			if (quoted) {
+				if (c == '"') {
+					if (fill() && buffer[position] == '"') {
+						field.append('"');
+						position++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					if (c == '\n') {
+						line++;
+					}
+					field.append(c);
+				}
+			} else if (c == '"' && field.length() == 0 && !wasQuoted) {
+				quoted = true;
+				wasQuoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+				wasQuoted = false;
+			} else if (c == '\n') {
+				line++;
+				break;
+			} else if (c == '\r' && fill() && buffer[position] == '\n') {
+				// The LF ends the record
+			} else {
+				field.append(c);
+			}
+		}
+		if (quoted) {
+			throw new IOException("Line " + line + ": unclosed quote");
+		}
+		fields.add(field.toString());
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * @return the line the next record starts on, from 1
+	 */
+	long getLine() {
+		return line;
+	}
+
+	/**
+	 * @return true if there is a character to read at position
+	 */
+	private boolean fill() throws IOException {
+		if (position < limit) {
+			return true;
+		}
+		int read = in.read(buffer, 0, buffer.length);
+		while (read == 0) {
+			read = in.read(buffer, 0, buffer.length);
+		}
+		position = 0;
+		limit = Math.max(read, 0);
+		return read > 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * @param field
+	 * @return the field, quoted if it holds a comma, quote or line break
+	 */
+	static String quote(String field) {
+		if (field == null) {
+			return "";
+		}
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				return '"' + field.replace("\"", "\"\"") + '"';
+			}
+		}
+		return field;
+	}
+}
@@ -0,0 +1,55 @@
+package snippets;
+
+/**
+ * Union-find over ordinals 0 to size - 1. Each set is represented by its
+ * smallest ordinal, so the representative doesn't depend on the order sets
+ * are joined in. Not thread safe.
+ */
+final class DisjointSets {
+
+	private final int[] parents;
+
+	DisjointSets(int size) {
+		parents = new int[size];
+		for (int i = 0; i < size; i++) {
+			parents[i] = i;
+		}
+	}
+
+	/**
+	 * @param ordinal
+	 * @return the smallest ordinal in the ordinal's set
+	 */
+	int find(int ordinal) {
+		while (parents[ordinal] != ordinal) {
+			// Path halving
+			parents[ordinal] = parents[parents[ordinal]];
+			ordinal = parents[ordinal];
+		}
+		return ordinal;
+	}
+
+	/**
+	 * Join the sets of the two ordinals.
+	 */
+	void union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if (rootA < rootB) {
+			parents[rootB] = rootA;
+		} else if (rootB < rootA) {
+			parents[rootA] = rootB;
+		}
+	}
+
+	/**
+	 * @return the representative of every ordinal's set
+	 */
+	int[] representatives() {
+		int[] representatives = new int[parents.length];
+		for (int i = 0; i < parents.length; i++) {
+			representatives[i] = find(i);
+		}
+		return representatives;
+	}
+}
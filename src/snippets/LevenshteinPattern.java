@@ -0,0 +1,207 @@
+package snippets;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Levenshtein distances from one string to many others, computed bit
+ * parallel (Myers' algorithm as formulated by Hyyr&ouml;): the string's
+ * character masks are built once, then each distance takes one pass over the
+ * other string with a few word operations per character and allocates
+ * nothing. <br>
+ * Gives exactly the distances of
+ * {@link StringUtils#getLevenshteinDistance(CharSequence, CharSequence, int)}
+ * ; strings over 64 characters, null strings and negative thresholds are
+ * handed to it. <br>
+ * A distance can also be bounded from below without computing it, from the
+ * characters and pairs of characters in one string but not the other (see
+ * {@link #grams(CharSequence)}), so strings that are far apart are left out
+ * before any distance is computed.
+ */
+final class LevenshteinPattern {
+
+	private static final int MAX_LENGTH = Long.SIZE;
+	private static final char[] NO_CHARS = new char[0];
+	private static final long[] NO_MASKS = new long[0];
+
+	/**
+	 * The grams of a string that are not known, e.g. because it wasn't
+	 * prepared; also those of the empty string.
+	 */
+	static final long NO_GRAMS = 0L;
+
+	private final String pattern;
+	private final long grams;
+	private final boolean bitParallel;
+	private final long last;
+
+	/**
+	 * Masks of the positions each character is at: ASCII by character, the
+	 * rest in a list, searched in order.
+	 */
+	private final long[] asciiMasks;
+	private final char[] others;
+	private final long[] otherMasks;
+
+	LevenshteinPattern(String pattern) {
+		super();
+		this.pattern = pattern;
+		this.grams = grams(pattern);
+		this.bitParallel = pattern != null && pattern.length() > 0
+				&& pattern.length() <= MAX_LENGTH;
+		if (!bitParallel) {
+			this.last = 0;
+			this.asciiMasks = NO_MASKS;
+			this.others = NO_CHARS;
+			this.otherMasks = NO_MASKS;
+			return;
+		}
+
+		this.last = 1L << pattern.length() - 1;
+		this.asciiMasks = new long[128];
+		char[] chars = new char[pattern.length()];
+		long[] masks = new long[pattern.length()];
+		int otherCount = 0;
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (c < 128) {
+				asciiMasks[c] |= 1L << i;
+			} else {
+				int other = 0;
+				while (other < otherCount && chars[other] != c) {
+					other++;
+				}
+				if (other == otherCount) {
+					chars[otherCount++] = c;
+				}
+				masks[other] |= 1L << i;
+			}
+		}
+		this.others = Arrays.copyOf(chars, otherCount);
+		this.otherMasks = Arrays.copyOf(masks, otherCount);
+	}
+
+	/**
+	 * @return the string distances are computed from
+	 */
+	String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return {@link #grams(CharSequence)} of the pattern
+	 */
+	long getGrams() {
+		return grams;
+	}
+
+	/**
+	 * The characters and the pairs of adjacent characters of a string, each
+	 * hashed to one of 32 bits: characters in the low half (A to Z each to
+	 * its own bit), pairs in the high half. Gram sets can only tell a
+	 * distance is at least so much, since a gram of one string set in the
+	 * other's bits may just share its bit.
+	 *
+	 * @param s
+	 * @return the bits of the grams, {@link #NO_GRAMS} for null or empty
+	 */
+	static long grams(CharSequence s) {
+		if (s == null) {
+			return NO_GRAMS;
+		}
+		long grams = 0;
+		char previous = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			int bit = c >= 'A' && c <= 'Z' ? c - 'A' : 26 + c % 6;
+			grams |= 1L << bit;
+			if (i > 0) {
+				grams |= 1L << 32 + ((previous * 31 + c) * 0x9E3779B1 >>> 27);
+			}
+			previous = c;
+		}
+		return grams;
+	}
+
+	/**
+	 * The least distance between two strings with the given grams. An edit
+	 * removes at most one character and two pairs from a string, and every
+	 * gram of one string the other lacks must be removed.
+	 *
+	 * @param a
+	 * @param b
+	 * @return a lower bound on the distance, 0 when either is
+	 *         {@link #NO_GRAMS}
+	 */
+	static int lowerBound(long a, long b) {
+		if (a == NO_GRAMS || b == NO_GRAMS) {
+			return 0;
+		}
+		long onlyA = a & ~b;
+		long onlyB = b & ~a;
+		int characters = Math.max(Integer.bitCount((int) onlyA),
+				Integer.bitCount((int) onlyB));
+		int pairs = Math.max(Long.bitCount(onlyA >>> 32),
+				Long.bitCount(onlyB >>> 32));
+		return Math.max(characters, (pairs + 1) / 2);
+	}
+
+	private long mask(char c) {
+		if (c < 128) {
+			return asciiMasks[c];
+		}
+		for (int i = 0; i < others.length; i++) {
+			if (others[i] == c) {
+				return otherMasks[i];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param text
+	 * @param threshold
+	 *            the largest distance of interest
+	 * @return the distance from the pattern to the text, or -1 if it is
+	 *         greater than the threshold
+	 */
+	int distance(CharSequence text, int threshold) {
+		if (!bitParallel || text == null || threshold < 0) {
+			return StringUtils.getLevenshteinDistance(text, pattern,
+					threshold);
+		}
+		int n = text.length();
+		if (Math.abs(n - pattern.length()) > threshold) {
+			return -1;
+		}
+
+		// Vertical deltas of the current column, all +1 down the first
+		long positive = -1L;
+		long negative = 0L;
+		int score = pattern.length();
+		for (int j = 0; j < n; j++) {
+			long equal = mask(text.charAt(j));
+			long vertical = equal | negative;
+			long horizontal = (((equal & positive) + positive) ^ positive)
+					| equal;
+			long horizontalPositive = negative | ~(horizontal | positive);
+			long horizontalNegative = positive & horizontal;
+			if ((horizontalPositive & last) != 0) {
+				score++;
+			} else if ((horizontalNegative & last) != 0) {
+				score--;
+			}
+			// The distance can drop by at most one per character left
+			if (score - (n - 1 - j) > threshold) {
+				return -1;
+			}
+			horizontalPositive = horizontalPositive << 1 | 1;
+			horizontalNegative = horizontalNegative << 1;
+			positive = horizontalNegative
+					| ~(vertical | horizontalPositive);
+			negative = horizontalPositive & vertical;
+		}
+		return score <= threshold ? score : -1;
+	}
+}
@@ -0,0 +1,176 @@
+package snippets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Source persons that keep changing while they are matched against: persons
+ * are put and removed by key, as in a Map, and every match sees the source
+ * persons as they were when it started. <br>
+ * The persons are prepared as by {@link PreparedCandidates}, in segments of
+ * at most {@value #SEGMENT_SIZE}. A change copies only the segment it touches
+ * and publishes a new array of segments, so a match never waits on a change
+ * and a change never waits on a match; changes wait on each other. <br>
+ * Candidates with equal confidences come back in the order they are stored,
+ * which moves as persons are removed.
+ *
+ * @param <K>
+ *            the key a person is put and removed by, e.g. a member id
+ */
+public class LiveCandidates<K> {
+
+	/**
+	 * Most persons in a segment.
+	 */
+	static final int SEGMENT_SIZE = 1024;
+
+	/**
+	 * Where a person is stored.
+	 */
+	private static final class Slot {
+		private final int segment;
+		private int ordinal;
+
+		private Slot(int segment, int ordinal) {
+			this.segment = segment;
+			this.ordinal = ordinal;
+		}
+	}
+
+	private final boolean normalizeNames;
+	private volatile PreparedCandidates[] segments = new PreparedCandidates[0];
+	private volatile int size;
+
+	// Only used while holding the lock
+	private final Map<K, Slot> slots = new HashMap<K, Slot>();
+	private final List<List<K>> keys = new ArrayList<List<K>>();
+	private final TreeSet<Integer> withRoom = new TreeSet<Integer>();
+
+	/**
+	 * Keep the names as they are.
+	 */
+	public LiveCandidates() {
+		this(false);
+	}
+
+	/**
+	 * @param normalizeNames
+	 *            keep the names in the form of {@link NameNormalizer}
+	 */
+	public LiveCandidates(boolean normalizeNames) {
+		super();
+		this.normalizeNames = normalizeNames;
+	}
+
+	/**
+	 * Add the person, or replace the person put with the same key.
+	 *
+	 * @param key
+	 * @param person
+	 * @return the person replaced, or null if there was none
+	 * @throws IllegalArgumentException
+	 *             if the person's date of birth is null
+	 */
+	public synchronized PersonNameMatcher put(K key,
+			PersonNameMatcher person) {
+		PreparedCandidates[] next = segments.clone();
+		Slot slot = slots.get(key);
+		if (slot != null) {
+			PreparedCandidates segment = next[slot.segment];
+			PersonNameMatcher replaced = segment.persons[slot.ordinal];
+			next[slot.segment] = segment.with(slot.ordinal, person);
+			segments = next;
+			return replaced;
+		}
+
+		int segment;
+		if (withRoom.isEmpty()) {
+			segment = next.length;
+			next = Arrays.copyOf(next, segment + 1);
+			next[segment] = new PreparedCandidates(
+					Collections.<PersonNameMatcher> emptyList(),
+					normalizeNames);
+			keys.add(new ArrayList<K>());
+		} else {
+			segment = withRoom.first();
+		}
+		int ordinal = next[segment].size();
+		next[segment] = next[segment].with(ordinal, person);
+		if (ordinal + 1 < SEGMENT_SIZE) {
+			withRoom.add(segment);
+		} else {
+			withRoom.remove(segment);
+		}
+		slots.put(key, new Slot(segment, ordinal));
+		keys.get(segment).add(key);
+		size++;
+		segments = next;
+		return null;
+	}
+
+	/**
+	 * @param key
+	 * @return the person removed, or null if none was put with the key
+	 */
+	public synchronized PersonNameMatcher remove(K key) {
+		Slot slot = slots.remove(key);
+		if (slot == null) {
+			return null;
+		}
+		PreparedCandidates[] next = segments.clone();
+		PreparedCandidates segment = next[slot.segment];
+		PersonNameMatcher removed = segment.persons[slot.ordinal];
+		next[slot.segment] = segment.without(slot.ordinal);
+
+		// The segment's last person took the removed person's place
+		List<K> segmentKeys = keys.get(slot.segment);
+		K moved = segmentKeys.remove(segmentKeys.size() - 1);
+		if (slot.ordinal < segmentKeys.size()) {
+			segmentKeys.set(slot.ordinal, moved);
+			slots.get(moved).ordinal = slot.ordinal;
+		}
+		withRoom.add(slot.segment);
+		size--;
+		segments = next;
+		return removed;
+	}
+
+	/**
+	 * @param key
+	 * @return the person put with the key, or null if there is none
+	 */
+	public synchronized PersonNameMatcher get(K key) {
+		Slot slot = slots.get(key);
+		if (slot == null) {
+			return null;
+		}
+		return segments[slot.segment].persons[slot.ordinal];
+	}
+
+	/**
+	 * @return the number of persons
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the names are kept in the form of
+	 *         {@link NameNormalizer}
+	 */
+	public boolean isNormalized() {
+		return normalizeNames;
+	}
+
+	/**
+	 * @return the segments as they are now; never changed afterwards
+	 */
+	PreparedCandidates[] snapshot() {
+		return segments;
+	}
+}
@@ -0,0 +1,575 @@
+package snippets;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The source persons prepared as by {@link PreparedCandidates}, written to a
+ * file once and then matched against straight from a memory mapping of it.
+ * Opening the file reads nothing but its header, so a matcher can serve right
+ * away; the pages are read in as they are first used and are shared through
+ * the page cache by every JVM on the host that maps the same file. <br>
+ * Each distinct name is stored once; a name is only turned into a String the
+ * first time a candidate with it is scored. The dates of birth, genders and
+ * name references are read from the mapping on every match and never kept on
+ * the heap. <br>
+ * The file can carry the blocks of a {@link PersonIndex} so only the
+ * candidates sharing a block with the person are scored; written without
+ * {@link BlockingKey}s every source person is scored. <br>
+ * The persons read back are {@link Candidate}s, whose ordinal is the
+ * position of the source person it was written from. They only carry what
+ * the file stores, which has no weak match criteria: a mapped candidate never
+ * weak matches, and a person's {@link PersonNameMatcher#weakMatch(Object)} is
+ * never called with one. The Candidate a {@link ScoringStage} is given is
+ * moved from candidate to candidate within a match, so a stage must not keep
+ * it. <br>
+ * A file is limited to 2 GB. The mapping is released when the
+ * MappedCandidates is garbage collected. Immutable once opened, so it can be
+ * shared by any number of threads.
+ */
+public class MappedCandidates implements CandidateIndex {
+
+	private static final int MAGIC = 0x534E4D43;
+	private static final int VERSION = 1;
+	private static final int HEADER = 40;
+
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int nameCount;
+	private final BlockingKeys keys;
+	private final int blockCount;
+
+	private final int nameOffsets;
+	private final int nameData;
+	private final int lastNames;
+	private final int firstNames;
+	private final int years;
+	private final int epochDays;
+	private final int months;
+	private final int days;
+	private final int genders;
+	private final int blockKeys;
+	private final int blockStarts;
+	private final int blockOrdinals;
+
+	private final Map<String, Byte> genderCodes = new HashMap<String, Byte>();
+	private final Name[] names;
+
+	/**
+	 * A name read from the file, with its hyphenated parts.
+	 */
+	private static final class Name {
+		private final String value;
+		private final String[] parts;
+
+		private Name(String value) {
+			this.value = value;
+			this.parts = NameMatcher.lastNameParts(value);
+		}
+	}
+
+	/**
+	 * Open a file written by {@link #write(List, Set, File)}.
+	 *
+	 * @param file
+	 * @throws IOException
+	 *             if the file can't be read or wasn't written by
+	 *             {@link #write(List, Set, File)}
+	 */
+	public MappedCandidates(File file) throws IOException {
+		super();
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Not a candidate file: " + file);
+			}
+			MappedByteBuffer mapped = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			this.buffer = mapped;
+		} finally {
+			channel.close();
+		}
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a candidate file: " + file);
+		}
+		this.size = buffer.getInt(8);
+		this.nameCount = buffer.getInt(12);
+		int nameChars = buffer.getInt(16);
+		int genderCount = buffer.getInt(20);
+		int keyMask = buffer.getInt(24);
+		this.blockCount = buffer.getInt(28);
+		int ordinalCount = buffer.getInt(32);
+
+		this.nameOffsets = HEADER;
+		this.nameData = nameOffsets + 4 * (nameCount + 1);
+		int genderNames = nameData + 2 * nameChars;
+		this.lastNames = genderNames + 4 * genderCount;
+		this.firstNames = lastNames + 4 * size;
+		this.years = firstNames + 4 * size;
+		this.epochDays = years + 4 * size;
+		this.months = epochDays + 4 * size;
+		this.days = months + size;
+		this.genders = days + size;
+		this.blockKeys = genders + size;
+		this.blockStarts = blockKeys + 4 * blockCount;
+		this.blockOrdinals = blockStarts + 4 * (blockCount + 1);
+		if ((long) blockOrdinals + 4L * ordinalCount != buffer.capacity()) {
+			throw new IOException("Not a candidate file: " + file);
+		}
+
+		this.names = new Name[nameCount];
+		for (int code = 0; code < genderCount; code++) {
+			genderCodes.put(name(buffer.getInt(genderNames + 4 * code)),
+					(byte) code);
+		}
+		Set<BlockingKey> keySet = EnumSet.noneOf(BlockingKey.class);
+		for (BlockingKey key : BlockingKey.values()) {
+			if ((keyMask & 1 << key.ordinal()) != 0) {
+				keySet.add(key);
+			}
+		}
+		this.keys = new BlockingKeys(keySet);
+	}
+
+	/**
+	 * Write the source persons to a file, without blocks.
+	 *
+	 * @see #write(List, Set, File)
+	 */
+	public static void write(List<PersonNameMatcher> sourcePersons, File file)
+			throws IOException {
+		write(sourcePersons, EnumSet.noneOf(BlockingKey.class), file);
+	}
+
+	/**
+	 * Write the source persons to a file, with their blocks on the keys.
+	 * Dates of birth are stored as the year, month and day each Calendar
+	 * reports, see {@link PreparedCandidates}.
+	 *
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 * @param keys
+	 *            the {@link BlockingKey}s to block on. Empty scores every
+	 *            source person.
+	 * @param file
+	 *            replaced if it exists
+	 * @throws IOException
+	 */
+	public static void write(List<PersonNameMatcher> sourcePersons,
+			Set<BlockingKey> keys, File file) throws IOException {
+		int size = sourcePersons.size();
+		BlockingKeys blocking = new BlockingKeys(keys);
+		Map<String, Integer> nameIds = new HashMap<String, Integer>();
+		List<String> nameList = new ArrayList<String>();
+		Map<String, Integer> genderCodes = new HashMap<String, Integer>();
+		List<String> genderList = new ArrayList<String>();
+		TreeMap<String, OrdinalList> blocks = new TreeMap<String, OrdinalList>();
+
+		int[] lastNameIds = new int[size];
+		int[] firstNameIds = new int[size];
+		int[] yearColumn = new int[size];
+		int[] epochDayColumn = new int[size];
+		byte[] monthColumn = new byte[size];
+		byte[] dayColumn = new byte[size];
+		byte[] genderColumn = new byte[size];
+		for (int i = 0; i < size; i++) {
+			PersonNameMatcher person = sourcePersons.get(i);
+			Calendar dob = person.getDateOfBirth();
+			if (dob == null) {
+				throw new IllegalArgumentException(
+						"The date of birth must not be null");
+			}
+			lastNameIds[i] = nameId(nameIds, nameList, person.getLastName());
+			firstNameIds[i] = nameId(nameIds, nameList, person.getFirstName());
+			yearColumn[i] = dob.get(Calendar.YEAR);
+			monthColumn[i] = (byte) dob.get(Calendar.MONTH);
+			dayColumn[i] = (byte) dob.get(Calendar.DATE);
+			epochDayColumn[i] = PreparedCandidates.epochDay(yearColumn[i],
+					monthColumn[i], dayColumn[i]);
+
+			Integer gender = genderCodes.get(person.getGender());
+			if (gender == null) {
+				if (genderCodes.size() > Byte.MAX_VALUE) {
+					throw new IllegalArgumentException("More than "
+							+ (Byte.MAX_VALUE + 1) + " distinct genders");
+				}
+				gender = genderCodes.size();
+				genderCodes.put(person.getGender(), gender);
+				genderList.add(person.getGender());
+			}
+			genderColumn[i] = gender.byteValue();
+
+			if (!blocking.isEmpty()) {
+				for (String key : blocking.blocks(person.getLastName(),
+						person.getFirstName(), dob, null)) {
+					OrdinalList block = blocks.get(key);
+					if (block == null) {
+						block = new OrdinalList();
+						blocks.put(key, block);
+					}
+					block.add(i);
+				}
+			}
+		}
+		int[] blockKeyIds = new int[blocks.size()];
+		int ordinalCount = 0;
+		int b = 0;
+		for (Map.Entry<String, OrdinalList> block : blocks.entrySet()) {
+			blockKeyIds[b++] = nameId(nameIds, nameList, block.getKey());
+			ordinalCount += block.getValue().size();
+		}
+		int[] genderNameIds = new int[genderList.size()];
+		for (int code = 0; code < genderNameIds.length; code++) {
+			genderNameIds[code] = nameId(nameIds, nameList,
+					genderList.get(code));
+		}
+
+		long nameChars = 0;
+		for (String name : nameList) {
+			nameChars += name.length();
+		}
+		long length = HEADER + 4L * (nameList.size() + 1) + 2 * nameChars
+				+ 4L * genderNameIds.length + 19L * size + 4L
+				* blockKeyIds.length + 4L * (blockKeyIds.length + 1) + 4L
+				* ordinalCount;
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"The source persons don't fit in a 2 GB file");
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(size);
+			out.writeInt(nameList.size());
+			out.writeInt((int) nameChars);
+			out.writeInt(genderNameIds.length);
+			int keyMask = 0;
+			for (BlockingKey key : blocking.getKeys()) {
+				keyMask |= 1 << key.ordinal();
+			}
+			out.writeInt(keyMask);
+			out.writeInt(blockKeyIds.length);
+			out.writeInt(ordinalCount);
+			out.writeInt(0);
+
+			int offset = 0;
+			for (String name : nameList) {
+				out.writeInt(offset);
+				offset += name.length();
+			}
+			out.writeInt(offset);
+			for (String name : nameList) {
+				out.writeChars(name);
+			}
+			writeInts(out, genderNameIds, genderNameIds.length);
+			writeInts(out, lastNameIds, size);
+			writeInts(out, firstNameIds, size);
+			writeInts(out, yearColumn, size);
+			writeInts(out, epochDayColumn, size);
+			out.write(monthColumn);
+			out.write(dayColumn);
+			out.write(genderColumn);
+
+			writeInts(out, blockKeyIds, blockKeyIds.length);
+			int start = 0;
+			for (OrdinalList block : blocks.values()) {
+				out.writeInt(start);
+				start += block.size();
+			}
+			out.writeInt(start);
+			for (OrdinalList block : blocks.values()) {
+				for (int i = 0; i < block.size(); i++) {
+					out.writeInt(block.get(i));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static int nameId(Map<String, Integer> nameIds,
+			List<String> nameList, String name) {
+		if (name == null) {
+			return -1;
+		}
+		Integer id = nameIds.get(name);
+		if (id == null) {
+			id = nameList.size();
+			nameIds.put(name, id);
+			nameList.add(name);
+		}
+		return id;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values,
+			int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			out.writeInt(values[i]);
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the file was written with blocks, false if every
+	 *         source person is a candidate
+	 */
+	boolean isBlocked() {
+		return !keys.isEmpty();
+	}
+
+	/**
+	 * @return a {@link Candidate} to move from ordinal to ordinal with
+	 *         {@link Candidate#moveTo(int)}, for one thread
+	 */
+	Candidate flyweight() {
+		return new Candidate(this, -1);
+	}
+
+	/**
+	 * @return a {@link Candidate} read from the file, a new one on every call
+	 */
+	@Override
+	public Candidate getPerson(int ordinal) {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new IndexOutOfBoundsException("Ordinal: " + ordinal
+					+ ", Size: " + size);
+		}
+		return new Candidate(this, ordinal);
+	}
+
+	/**
+	 * Every source person that shares a block with the person or the
+	 * alternate last name, or every source person if the file was written
+	 * without {@link BlockingKey}s. The ceiling is not used: blocks are not
+	 * ranked.
+	 */
+	@Override
+	public int[] candidates(PersonNameMatcher person,
+			String alternateLastName, int ceiling) {
+		if (keys.isEmpty()) {
+			int[] all = new int[size];
+			for (int i = 0; i < all.length; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+
+		OrdinalList found = new OrdinalList();
+		for (String key : keys.blocks(person.getLastName(),
+				person.getFirstName(), person.getDateOfBirth(),
+				alternateLastName)) {
+			int block = findBlock(key);
+			if (block >= 0) {
+				int start = buffer.getInt(blockStarts + 4 * block);
+				int end = buffer.getInt(blockStarts + 4 * (block + 1));
+				for (int i = start; i < end; i++) {
+					found.add(buffer.getInt(blockOrdinals + 4 * i));
+				}
+			}
+		}
+		return found.toSortedArray();
+	}
+
+	/**
+	 * Binary search of the blocks, which are written in key order.
+	 */
+	private int findBlock(String key) {
+		int low = 0;
+		int high = blockCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compared = name(buffer.getInt(blockKeys + 4 * middle))
+					.compareTo(key);
+			if (compared < 0) {
+				low = middle + 1;
+			} else if (compared > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param gender
+	 * @return the code candidates with an equal gender carry, or -1 if no
+	 *         candidate has it
+	 */
+	byte genderCode(String gender) {
+		Byte code = genderCodes.get(gender);
+		return code == null ? -1 : code;
+	}
+
+	String lastName(int ordinal) {
+		return name(buffer.getInt(lastNames + 4 * ordinal));
+	}
+
+	String[] lastNameParts(int ordinal) {
+		int id = buffer.getInt(lastNames + 4 * ordinal);
+		return id < 0 ? null : lookup(id).parts;
+	}
+
+	String firstName(int ordinal) {
+		return name(buffer.getInt(firstNames + 4 * ordinal));
+	}
+
+	byte gender(int ordinal) {
+		return buffer.get(genders + ordinal);
+	}
+
+	int year(int ordinal) {
+		return buffer.getInt(years + 4 * ordinal);
+	}
+
+	int epochDay(int ordinal) {
+		return buffer.getInt(epochDays + 4 * ordinal);
+	}
+
+	int month(int ordinal) {
+		return buffer.get(months + ordinal);
+	}
+
+	int day(int ordinal) {
+		return buffer.get(days + ordinal);
+	}
+
+	private String name(int id) {
+		return id < 0 ? null : lookup(id).value;
+	}
+
+	/**
+	 * Decode the name the first time it is asked for. Threads racing on the
+	 * same name each decode their own, equal, copy.
+	 */
+	private Name lookup(int id) {
+		Name name = names[id];
+		if (name == null) {
+			int start = buffer.getInt(nameOffsets + 4 * id);
+			int end = buffer.getInt(nameOffsets + 4 * (id + 1));
+			char[] chars = new char[end - start];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = buffer.getChar(nameData + 2 * (start + i));
+			}
+			name = new Name(new String(chars));
+			names[id] = name;
+		}
+		return name;
+	}
+
+	/**
+	 * A source person read back from a {@link MappedCandidates} file.
+	 */
+	public static final class Candidate implements PersonNameMatcher {
+
+		private final MappedCandidates candidates;
+		private int ordinal;
+
+		private Candidate(MappedCandidates candidates, int ordinal) {
+			this.candidates = candidates;
+			this.ordinal = ordinal;
+		}
+
+		/**
+		 * Make a flyweight stand for another source person.
+		 */
+		Candidate moveTo(int ordinal) {
+			this.ordinal = ordinal;
+			return this;
+		}
+
+		/**
+		 * @return the position of the source person in the list the file
+		 *         was written from
+		 */
+		public int getOrdinal() {
+			return ordinal;
+		}
+
+		@Override
+		public String getLastName() {
+			return candidates.lastName(ordinal);
+		}
+
+		@Override
+		public String getFirstName() {
+			return candidates.firstName(ordinal);
+		}
+
+		@Override
+		public String getGender() {
+			for (Map.Entry<String, Byte> gender : candidates.genderCodes
+					.entrySet()) {
+				if (gender.getValue() == candidates.gender(ordinal)) {
+					return gender.getKey();
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return the date of birth at midnight in the default time zone
+		 */
+		@Override
+		public Calendar getDateOfBirth() {
+			Calendar dob = Calendar.getInstance();
+			dob.clear();
+			dob.set(candidates.year(ordinal), candidates.month(ordinal),
+					candidates.day(ordinal));
+			return dob;
+		}
+
+		/**
+		 * @return false, the file carries no weak match criteria
+		 */
+		@Override
+		public boolean weakMatch(Object candidate) {
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(candidates) * 31 + ordinal;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Candidate)) {
+				return false;
+			}
+			Candidate other = (Candidate) obj;
+			return candidates == other.candidates && ordinal == other.ordinal;
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(new Object[] { getFirstName(),
+					getLastName(), getGender(), candidates.year(ordinal),
+					candidates.month(ordinal) + 1, candidates.day(ordinal) });
+		}
+	}
+}
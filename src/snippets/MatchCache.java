@@ -0,0 +1,289 @@
+package snippets;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Remembers the results of the most recent matches against one set of source
+ * persons, so a person asked for again (e.g. a resubmitted claim) is answered
+ * without scoring the source persons again. <br>
+ * A match is looked up on the person's last name, first name, gender and the
+ * year, month and day of its date of birth, with the alternate last name,
+ * ceiling and maxReturns. The results of a match depend on nothing else:
+ * {@link PersonNameMatcher#weakMatch(Object)} only decides which
+ * {@link MatchRule} a candidate is counted under, never its confidence, so
+ * the results are the same whatever it does. A hit does skip the weak match
+ * calls and adds nothing to the {@link NameMatcher}'s {@link MatchRecorder};
+ * to have them called on every match, match on the NameMatcher itself. A
+ * {@link ScoringStage} that reads anything else of the person makes its
+ * results depend on it too; don't cache such a matcher. <br>
+ * Once full, the least recently used match is evicted. Replacing the source
+ * persons through {@link #setSourcePersons(List)} or
+ * {@link #setIndex(CandidateIndex)} drops every cached match, and a match
+ * that was running against the old source persons is not cached. The source
+ * persons must not be changed in place. <br>
+ * Thread safe; the matching itself is done outside of the lock, so two
+ * threads missing on the same person both match it.
+ */
+public class MatchCache {
+
+	private final NameMatcher matcher;
+	private final Map<Key, List<PersonNameMatcher>> matches;
+
+	private PreparedCandidates candidates;
+	private CandidateIndex index;
+	private long version;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * What a match is looked up on.
+	 */
+	private static final class Key {
+		private final String lastName;
+		private final String firstName;
+		private final String gender;
+		private final int year;
+		private final int month;
+		private final int day;
+		private final String alternateLastName;
+		private final int ceiling;
+		private final int maxReturns;
+		private final int hashCode;
+
+		private Key(PersonNameMatcher person, String alternateLastName,
+				int ceiling, int maxReturns) {
+			this.lastName = person.getLastName();
+			this.firstName = person.getFirstName();
+			this.gender = person.getGender();
+			Calendar dob = person.getDateOfBirth();
+			if (dob == null) {
+				throw new IllegalArgumentException(
+						"The date of birth must not be null");
+			}
+			this.year = dob.get(Calendar.YEAR);
+			this.month = dob.get(Calendar.MONTH);
+			this.day = dob.get(Calendar.DATE);
+			this.alternateLastName = StringUtils
+					.isNotEmpty(alternateLastName) ? alternateLastName : null;
+			this.ceiling = ceiling < 0 ? 0 : ceiling;
+			this.maxReturns = maxReturns < 1 ? 1 : maxReturns;
+
+			int result = 1;
+			result = 31 * result + (lastName == null ? 0 : lastName.hashCode());
+			result = 31 * result
+					+ (firstName == null ? 0 : firstName.hashCode());
+			result = 31 * result + (gender == null ? 0 : gender.hashCode());
+			result = 31 * result + year;
+			result = 31 * result + month;
+			result = 31 * result + day;
+			result = 31
+					* result
+					+ (this.alternateLastName == null ? 0
+							: this.alternateLastName.hashCode());
+			result = 31 * result + this.ceiling;
+			result = 31 * result + this.maxReturns;
+			this.hashCode = result;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hashCode == other.hashCode && year == other.year
+					&& month == other.month && day == other.day
+					&& ceiling == other.ceiling
+					&& maxReturns == other.maxReturns
+					&& StringUtils.equals(lastName, other.lastName)
+					&& StringUtils.equals(firstName, other.firstName)
+					&& StringUtils.equals(gender, other.gender)
+					&& StringUtils.equals(alternateLastName,
+							other.alternateLastName);
+		}
+	}
+
+	/**
+	 * Cache matches against prepared source persons.
+	 *
+	 * @param matcher
+	 *            - {@link NameMatcher} doing the matches
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 * @param maximumSize
+	 *            most matches kept
+	 */
+	public MatchCache(NameMatcher matcher,
+			List<PersonNameMatcher> sourcePersons, int maximumSize) {
+		this(matcher, maximumSize);
+		this.candidates = new PreparedCandidates(sourcePersons);
+	}
+
+	/**
+	 * Cache matches against the candidates an index finds.
+	 *
+	 * @param matcher
+	 *            - {@link NameMatcher} doing the matches
+	 * @param index
+	 *            - {@link CandidateIndex} over the Persons to match against
+	 * @param maximumSize
+	 *            most matches kept
+	 */
+	public MatchCache(NameMatcher matcher, CandidateIndex index,
+			int maximumSize) {
+		this(matcher, maximumSize);
+		this.index = index;
+	}
+
+	private MatchCache(NameMatcher matcher, final int maximumSize) {
+		super();
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException(
+					"The maximum size must be at least 1");
+		}
+		this.matcher = matcher;
+		this.matches = new LinkedHashMap<Key, List<PersonNameMatcher>>(16,
+				0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Key, List<PersonNameMatcher>> eldest) {
+				if (size() > maximumSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Do a match on the person against the source persons, or return the
+	 * results of the same match done before.
+	 *
+	 * @see NameMatcher#fuzzyNameMatch(PersonNameMatcher, List, String, int,
+	 *      int)
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher, a new list on every call.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			String alternateLastName, int ceiling, int maxReturns) {
+		Key key = new Key(person, alternateLastName, ceiling, maxReturns);
+		PreparedCandidates matchCandidates;
+		CandidateIndex matchIndex;
+		long matchVersion;
+		synchronized (this) {
+			List<PersonNameMatcher> cached = matches.get(key);
+			if (cached != null) {
+				hits++;
+				return new ArrayList<PersonNameMatcher>(cached);
+			}
+			misses++;
+			matchCandidates = candidates;
+			matchIndex = index;
+			matchVersion = version;
+		}
+
+		List<PersonNameMatcher> results;
+		if (matchCandidates != null) {
+			results = matcher.fuzzyNameMatch(person, matchCandidates,
+					alternateLastName, ceiling, maxReturns);
+		} else {
+			results = matcher.fuzzyNameMatch(person, matchIndex,
+					alternateLastName, ceiling, maxReturns);
+		}
+
+		synchronized (this) {
+			if (version == matchVersion) {
+				matches.put(key, new ArrayList<PersonNameMatcher>(results));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Match against new source persons from now on, dropping every cached
+	 * match.
+	 *
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 */
+	public void setSourcePersons(List<PersonNameMatcher> sourcePersons) {
+		PreparedCandidates prepared = new PreparedCandidates(sourcePersons);
+		synchronized (this) {
+			candidates = prepared;
+			index = null;
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * Match against the candidates a new index finds from now on, dropping
+	 * every cached match.
+	 *
+	 * @param index
+	 *            - {@link CandidateIndex} over the Persons to match against
+	 */
+	public synchronized void setIndex(CandidateIndex index) {
+		this.candidates = null;
+		this.index = index;
+		invalidateAll();
+	}
+
+	/**
+	 * Drop every cached match, e.g. when the source persons were changed in
+	 * place after all.
+	 */
+	public synchronized void invalidateAll() {
+		matches.clear();
+		version++;
+	}
+
+	/**
+	 * @return the number of matches cached
+	 */
+	public synchronized int size() {
+		return matches.size();
+	}
+
+	/**
+	 * @return the number of matches answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of matches not in the cache
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of matches dropped to make room for newer ones
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "size=" + matches.size() + " hits=" + hits + " misses="
+				+ misses + " evictions=" + evictions;
+	}
+}
@@ -0,0 +1,173 @@
+package snippets;
+
+/**
+ * What one fuzzyNameMatch did: how many candidates left through each
+ * {@link MatchRule}, the Levenshtein distances and weak matches it needed and
+ * how long it took, and what it was asked: the person, alternate last name,
+ * ceiling, maximum returns and number of source persons. Only collected when
+ * the {@link NameMatcher} has a {@link MatchRecorder}.
+ */
+public class MatchMetrics {
+
+	/**
+	 * Levenshtein calls are counted by the length of the longer string, the
+	 * last bucket counting every length from it up.
+	 */
+	public static final int LENGTH_BUCKETS = 33;
+
+	private static final MatchRule[] RULES = MatchRule.values();
+
+	private final long start;
+	private long nanos;
+	private final int[] candidates = new int[RULES.length];
+	private int levenshteinCalls;
+	private long levenshteinCells;
+	private final int[] levenshteinLengths = new int[LENGTH_BUCKETS];
+	private int weakMatches;
+	private PersonNameMatcher person;
+	private String alternateLastName;
+	private int ceiling;
+	private int maxReturns;
+	private int sourceSize;
+
+	MatchMetrics() {
+		super();
+		this.start = System.nanoTime();
+	}
+
+	void candidate(MatchRule exit) {
+		candidates[exit.ordinal()]++;
+	}
+
+	void levenshtein(CharSequence s, CharSequence t) {
+		int longer = Math.max(s.length(), t.length());
+		levenshteinCalls++;
+		levenshteinCells += (long) s.length() * t.length();
+		levenshteinLengths[Math.min(longer, LENGTH_BUCKETS - 1)]++;
+	}
+
+	void weakMatch() {
+		weakMatches++;
+	}
+
+	/**
+	 * Add in the metrics of part of the same match done on another thread.
+	 */
+	synchronized void add(MatchMetrics other) {
+		for (int i = 0; i < candidates.length; i++) {
+			candidates[i] += other.candidates[i];
+		}
+		levenshteinCalls += other.levenshteinCalls;
+		levenshteinCells += other.levenshteinCells;
+		for (int i = 0; i < levenshteinLengths.length; i++) {
+			levenshteinLengths[i] += other.levenshteinLengths[i];
+		}
+		weakMatches += other.weakMatches;
+	}
+
+	void finish(PersonNameMatcher person, String alternateLastName,
+			int ceiling, int maxReturns, int sourceSize) {
+		nanos = System.nanoTime() - start;
+		this.person = person;
+		this.alternateLastName = alternateLastName;
+		this.ceiling = ceiling;
+		this.maxReturns = maxReturns;
+		this.sourceSize = sourceSize;
+	}
+
+	/**
+	 * @return how long the match took
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @param exit
+	 * @return the number of candidates that left through the rule
+	 */
+	public int getCandidates(MatchRule exit) {
+		return candidates[exit.ordinal()];
+	}
+
+	/**
+	 * @return the number of candidates scored
+	 */
+	public int getCandidates() {
+		int total = 0;
+		for (int count : candidates) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of Levenshtein distances computed
+	 */
+	public int getLevenshteinCalls() {
+		return levenshteinCalls;
+	}
+
+	/**
+	 * @return the sum of the sizes (length times length) of the Levenshtein
+	 *         distances computed, before any threshold cut them short
+	 */
+	public long getLevenshteinCells() {
+		return levenshteinCells;
+	}
+
+	/**
+	 * @param length
+	 *            of the longer string
+	 * @return the number of Levenshtein distances computed at that length
+	 *         (every length from {@link #LENGTH_BUCKETS} - 1 up for the last)
+	 */
+	public int getLevenshteinCalls(int length) {
+		return levenshteinLengths[Math.min(length, LENGTH_BUCKETS - 1)];
+	}
+
+	/**
+	 * @return the number of user defined weak matches called
+	 */
+	public int getWeakMatches() {
+		return weakMatches;
+	}
+
+	/**
+	 * @return the person matched
+	 */
+	public PersonNameMatcher getPerson() {
+		return person;
+	}
+
+	/**
+	 * @return the alternate last name used, or null if there was none
+	 */
+	public String getAlternateLastName() {
+		return alternateLastName;
+	}
+
+	/**
+	 * @return the ceiling matched under, after defaulting
+	 */
+	public int getCeiling() {
+		return ceiling;
+	}
+
+	/**
+	 * @return the maximum number of matches asked for, after defaulting; 0
+	 *         for a person's search for its pairs in fuzzyNameClusters,
+	 *         which keeps every pair under the ceiling
+	 */
+	public int getMaxReturns() {
+		return maxReturns;
+	}
+
+	/**
+	 * @return the number of source persons matched against, or -1 if the
+	 *         source didn't know its size
+	 */
+	public int getSourceSize() {
+		return sourceSize;
+	}
+}
@@ -0,0 +1,17 @@
+package snippets;
+
+/**
+ * Receives the {@link MatchMetrics} of every match a {@link NameMatcher} does.
+ * Called from whichever thread did the match, once it is done, so
+ * implementations shared by a batch must be thread safe.
+ * 
+ * @see MatchStatistics
+ */
+public interface MatchRecorder {
+
+	/**
+	 * @param metrics
+	 *            - what one fuzzyNameMatch did; not reused afterwards.
+	 */
+	public void record(MatchMetrics metrics);
+}
@@ -0,0 +1,44 @@
+package snippets;
+
+import java.util.List;
+
+/**
+ * The matches a match with a deadline found, and whether it scored every
+ * candidate before the deadline. Immutable.
+ *
+ * @see NameMatcher#fuzzyNameMatch(PersonNameMatcher, PreparedCandidates,
+ *      String, int, int, long, java.util.concurrent.TimeUnit)
+ */
+public final class MatchResult {
+
+	private final List<PersonNameMatcher> matches;
+	private final boolean complete;
+
+	MatchResult(List<PersonNameMatcher> matches, boolean complete) {
+		super();
+		this.matches = matches;
+		this.complete = complete;
+	}
+
+	/**
+	 * @return List<{@link PersonNameMatcher}> the best matches found, best
+	 *         first
+	 */
+	public List<PersonNameMatcher> getMatches() {
+		return matches;
+	}
+
+	/**
+	 * @return true if every candidate was scored, so the matches are the
+	 *         same as a match without a deadline would find; false if the
+	 *         deadline passed or the match was cancelled first
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	@Override
+	public String toString() {
+		return (complete ? "complete " : "partial ") + matches;
+	}
+}
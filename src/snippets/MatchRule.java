@@ -0,0 +1,44 @@
+package snippets;
+
+/**
+ * The rule of the {@link NameMatcher} cascade a candidate leaves through.
+ */
+public enum MatchRule {
+
+	/**
+	 * Same date of birth and gender.
+	 */
+	DOB_AND_GENDER,
+
+	/**
+	 * Same month and day of birth, under the year of birth threshold.
+	 */
+	YEAR_OF_BIRTH,
+
+	/**
+	 * Same year and day of birth, under the day of birth threshold.
+	 */
+	MONTH_OF_BIRTH,
+
+	/**
+	 * Same year of birth with the day's digits swapped, under the day of birth
+	 * threshold.
+	 */
+	TRANSPOSED_DAY,
+
+	/**
+	 * The user defined weak match, under the weak match threshold.
+	 */
+	WEAK_MATCH,
+
+	/**
+	 * None of the rules above.
+	 */
+	FALL_THROUGH,
+
+	/**
+	 * Given up on: the confidence could not get under the ceiling (or the
+	 * current worst of the best matches).
+	 */
+	REJECTED
+}
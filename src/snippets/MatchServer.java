@@ -0,0 +1,506 @@
+package snippets;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves matches against prepared source persons over HTTP, using the JDK's
+ * built in server. <br>
+ * <code>GET /match?lastName=&amp;firstName=&amp;gender=&amp;dateOfBirth=yyyy-MM-dd&amp;alternateLastName=&amp;ceiling=&amp;maxReturns=</code>
+ * <br>
+ * answers with a JSON array of the matches, best first, each with its
+ * ordinal in the source persons, confidence, names, gender and date of
+ * birth. A missing ceiling or maxReturns defaults as in
+ * {@link NameMatcher#fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+ * . lastName, firstName and dateOfBirth are required; a request without them
+ * is answered with 400 Bad Request. <br>
+ * Requests that arrive within the batch window of each other are matched
+ * together in one pass over the candidates (see {@link MatchServerConfig}).
+ * Requests over the in flight limit are answered right away with 503 Service
+ * Unavailable and a Retry-After header. A request whose match fails is
+ * answered with 500 Internal Server Error; the others in its batch are
+ * matched again one by one, so they are answered as if it hadn't been sent.
+ * <br>
+ * Requests are handled on the given executor; on a JDK with virtual threads
+ * a virtual thread per task executor suits it, as handlers mostly wait for
+ * their batch.
+ */
+public class MatchServer implements Closeable {
+
+	private final NameMatcher matcher;
+	private final PreparedCandidates candidates;
+	private final MatchServerConfig config;
+	private final HttpServer server;
+	private final ExecutorService ownExecutor;
+	private final Semaphore inFlight;
+	private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+	private final Thread batcher;
+	private volatile boolean running;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * A request waiting for its batch.
+	 */
+	private static final class Pending {
+		private final PersonNameMatcher person;
+		private final String alternateLastName;
+		private final int ceiling;
+		private final int maxReturns;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private List<PersonConfidence> matches;
+		private RuntimeException failure;
+		private boolean shutDown;
+
+		private Pending(PersonNameMatcher person, String alternateLastName,
+				int ceiling, int maxReturns) {
+			this.person = person;
+			this.alternateLastName = alternateLastName;
+			this.ceiling = ceiling;
+			this.maxReturns = maxReturns;
+		}
+	}
+
+	/**
+	 * The person a request asks for; it has no weak match criteria.
+	 */
+	private static final class RequestPerson implements PersonNameMatcher {
+		private final String lastName;
+		private final String firstName;
+		private final String gender;
+		private final Calendar dateOfBirth;
+
+		private RequestPerson(String lastName, String firstName,
+				String gender, Calendar dateOfBirth) {
+			this.lastName = lastName;
+			this.firstName = firstName;
+			this.gender = gender;
+			this.dateOfBirth = dateOfBirth;
+		}
+
+		@Override
+		public String getLastName() {
+			return lastName;
+		}
+
+		@Override
+		public String getFirstName() {
+			return firstName;
+		}
+
+		@Override
+		public String getGender() {
+			return gender;
+		}
+
+		@Override
+		public Calendar getDateOfBirth() {
+			return dateOfBirth;
+		}
+
+		@Override
+		public boolean weakMatch(Object candidate) {
+			return false;
+		}
+	}
+
+	/**
+	 * Serve with the default settings, handling requests on a thread pool
+	 * of its own.
+	 *
+	 * @param matcher
+	 *            - {@link NameMatcher} doing the matches
+	 * @param candidates
+	 *            - {@link PreparedCandidates} the Persons to match against
+	 * @param address
+	 *            to listen on; port 0 picks a free port
+	 * @throws IOException
+	 *             if the address can't be bound
+	 */
+	public MatchServer(NameMatcher matcher, PreparedCandidates candidates,
+			InetSocketAddress address) throws IOException {
+		this(matcher, candidates, address, MatchServerConfig.DEFAULT, null);
+	}
+
+	/**
+	 * @param matcher
+	 *            - {@link NameMatcher} doing the matches
+	 * @param candidates
+	 *            - {@link PreparedCandidates} the Persons to match against
+	 * @param address
+	 *            to listen on; port 0 picks a free port
+	 * @param config
+	 *            batching and admission settings
+	 * @param executor
+	 *            handles the requests; null for a thread pool of its own,
+	 *            shut down on {@link #close()}
+	 * @throws IOException
+	 *             if the address can't be bound
+	 */
+	public MatchServer(NameMatcher matcher, PreparedCandidates candidates,
+			InetSocketAddress address, MatchServerConfig config,
+			Executor executor) throws IOException {
+		super();
+		this.matcher = matcher;
+		this.candidates = candidates;
+		this.config = config;
+		this.inFlight = new Semaphore(config.getMaxInFlight());
+		if (executor == null) {
+			this.ownExecutor = Executors.newCachedThreadPool();
+			executor = ownExecutor;
+		} else {
+			this.ownExecutor = null;
+		}
+		this.server = HttpServer.create(address, 0);
+		server.setExecutor(executor);
+		server.createContext("/match", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					handleMatch(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		this.batcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				batch();
+			}
+		}, "match-batcher");
+		batcher.setDaemon(true);
+	}
+
+	/**
+	 * Start answering requests.
+	 */
+	public void start() {
+		running = true;
+		batcher.start();
+		server.start();
+	}
+
+	/**
+	 * Stop answering requests. Requests waiting for a batch, and those that
+	 * arrive while stopping, are answered with 503 Service Unavailable,
+	 * waiting up to a second for the answers to be sent.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		batcher.interrupt();
+		try {
+			batcher.join();
+			// Every request in flight has been answered once all are free
+			int permits = config.getMaxInFlight();
+			if (inFlight.tryAcquire(permits, 1, TimeUnit.SECONDS)) {
+				inFlight.release(permits);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		server.stop(0);
+		if (ownExecutor != null) {
+			ownExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the port listened on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return the number of requests matched
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the number of passes over the candidates
+	 */
+	public long getBatches() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the number of requests turned away over the in flight limit
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	private void handleMatch(HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().set("Allow", "GET");
+			respond(exchange, 405, "Only GET is supported");
+			return;
+		}
+		if (!inFlight.tryAcquire()) {
+			rejected.incrementAndGet();
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, 503, "Too many requests in flight");
+			return;
+		}
+		try {
+			Pending pending;
+			try {
+				pending = parse(exchange.getRequestURI().getRawQuery());
+			} catch (IllegalArgumentException e) {
+				respond(exchange, 400, e.getMessage());
+				return;
+			}
+			if (!running) {
+				respond(exchange, 503, "Shutting down");
+				return;
+			}
+			queue.add(pending);
+			// The batcher may have answered what was left and stopped
+			// between the check and the add; if so, take it back
+			if (!running && queue.remove(pending)) {
+				respond(exchange, 503, "Shutting down");
+				return;
+			}
+			try {
+				pending.done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				respond(exchange, 503, "Interrupted");
+				return;
+			}
+			if (pending.shutDown) {
+				respond(exchange, 503, "Shutting down");
+				return;
+			}
+			if (pending.failure != null) {
+				respond(exchange, 500, String.valueOf(pending.failure
+						.getMessage()));
+				return;
+			}
+			exchange.getResponseHeaders().set("Content-Type",
+					"application/json; charset=UTF-8");
+			respond(exchange, 200, toJson(pending.matches));
+		} finally {
+			inFlight.release();
+		}
+	}
+
+	/**
+	 * Take the requests that arrive within the window of the first one, up to
+	 * the batch size, and match them in one pass.
+	 */
+	private void batch() {
+		long window = TimeUnit.MILLISECONDS.toNanos(config
+				.getBatchWindowMillis());
+		List<Pending> batch = new ArrayList<Pending>();
+		while (running) {
+			try {
+				Pending first = queue.take();
+				batch.add(first);
+				long deadline = System.nanoTime() + window;
+				while (batch.size() < config.getMaxBatchSize()) {
+					long wait = deadline - System.nanoTime();
+					Pending next = wait > 0 ? queue.poll(wait,
+							TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+			match(batch);
+			batch.clear();
+		}
+
+		// Answer whatever is left
+		queue.drainTo(batch);
+		for (Pending pending : batch) {
+			pending.shutDown = true;
+			pending.done.countDown();
+		}
+	}
+
+	private void match(List<Pending> batch) {
+		int size = batch.size();
+		PersonNameMatcher[] persons = new PersonNameMatcher[size];
+		String[] alternateLastNames = new String[size];
+		int[] ceilings = new int[size];
+		int[] maxReturns = new int[size];
+		for (int i = 0; i < size; i++) {
+			Pending pending = batch.get(i);
+			persons[i] = pending.person;
+			alternateLastNames[i] = pending.alternateLastName;
+			ceilings[i] = pending.ceiling;
+			maxReturns[i] = pending.maxReturns;
+		}
+		try {
+			List<List<PersonConfidence>> results = matcher.fuzzyNameMatchGroup(
+					persons, alternateLastNames, ceilings, maxReturns,
+					candidates);
+			for (int i = 0; i < size; i++) {
+				batch.get(i).matches = results.get(i);
+			}
+		} catch (RuntimeException e) {
+			// Match them one by one, so only the request that failed fails
+			for (Pending pending : batch) {
+				try {
+					pending.matches = matcher.fuzzyNameMatchGroup(
+							new PersonNameMatcher[] { pending.person },
+							new String[] { pending.alternateLastName },
+							new int[] { pending.ceiling },
+							new int[] { pending.maxReturns }, candidates)
+							.get(0);
+				} catch (RuntimeException failure) {
+					pending.failure = failure;
+				}
+			}
+		}
+		batches.incrementAndGet();
+		requests.addAndGet(size);
+		for (Pending pending : batch) {
+			pending.done.countDown();
+		}
+	}
+
+	private static Pending parse(String query) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int equals = pair.indexOf('=');
+				if (equals > 0) {
+					parameters.put(decode(pair.substring(0, equals)),
+							decode(pair.substring(equals + 1)));
+				}
+			}
+		}
+
+		String lastName = parameters.get("lastName");
+		if (StringUtils.isBlank(lastName)) {
+			throw new IllegalArgumentException("lastName is required");
+		}
+		String firstName = parameters.get("firstName");
+		if (StringUtils.isBlank(firstName)) {
+			throw new IllegalArgumentException("firstName is required");
+		}
+		String dateOfBirth = parameters.get("dateOfBirth");
+		if (dateOfBirth == null) {
+			throw new IllegalArgumentException("dateOfBirth is required");
+		}
+		Calendar dob;
+		try {
+			dob = CsvPerson.parseDate(dateOfBirth);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(
+					"dateOfBirth must be a yyyy-MM-dd date");
+		}
+
+		String ceiling = parameters.get("ceiling");
+		String maxReturns = parameters.get("maxReturns");
+		return new Pending(new RequestPerson(lastName, firstName,
+				parameters.get("gender"), dob),
+				parameters.get("alternateLastName"), ceiling == null ? 0
+						: number(ceiling, "ceiling"), maxReturns == null ? 1
+						: number(maxReturns, "maxReturns"));
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static int number(String value, String name) {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a number");
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static String toJson(List<PersonConfidence> matches) {
+		StringBuilder json = new StringBuilder("[");
+		for (PersonConfidence match : matches) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			PersonNameMatcher person = match.getPerson();
+			Calendar dob = person.getDateOfBirth();
+			json.append("{\"ordinal\":").append(match.getOrdinal());
+			json.append(",\"confidence\":").append(match.getConfidence());
+			json.append(",\"lastName\":");
+			quote(json, person.getLastName());
+			json.append(",\"firstName\":");
+			quote(json, person.getFirstName());
+			json.append(",\"gender\":");
+			quote(json, person.getGender());
+			json.append(",\"dateOfBirth\":");
+			quote(json, String.format("%04d-%02d-%02d",
+					dob.get(Calendar.YEAR), dob.get(Calendar.MONTH) + 1,
+					dob.get(Calendar.DATE)));
+			json.append('}');
+		}
+		return json.append(']').toString();
+	}
+
+	private static void quote(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+}
@@ -0,0 +1,67 @@
+package snippets;
+
+/**
+ * Batching and admission settings of a {@link MatchServer}. Immutable.
+ * <ul>
+ * <li>batchWindowMillis = 2
+ * <li>maxBatchSize = 64
+ * <li>maxInFlight = 1024
+ * </ul>
+ */
+public final class MatchServerConfig {
+
+	/**
+	 * The defaults.
+	 */
+	public static final MatchServerConfig DEFAULT = new MatchServerConfig(
+			null, null, null);
+
+	private final int batchWindowMillis;
+	private final int maxBatchSize;
+	private final int maxInFlight;
+
+	/**
+	 * Null, negative or zero values will use the defaults.
+	 *
+	 * @param batchWindowMillis
+	 * @param maxBatchSize
+	 * @param maxInFlight
+	 */
+	public MatchServerConfig(Integer batchWindowMillis, Integer maxBatchSize,
+			Integer maxInFlight) {
+		super();
+		this.batchWindowMillis = orDefault(batchWindowMillis, 2);
+		this.maxBatchSize = orDefault(maxBatchSize, 64);
+		this.maxInFlight = orDefault(maxInFlight, 1024);
+	}
+
+	private static int orDefault(Integer value, int defaultValue) {
+		if (value != null && value > 0) {
+			return value;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * @return how long the first request of a batch waits for others to join
+	 *         it
+	 */
+	public int getBatchWindowMillis() {
+		return batchWindowMillis;
+	}
+
+	/**
+	 * @return the most requests matched in one pass over the candidates
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * @return the most requests accepted at once; more are turned away with
+	 *         503 Service Unavailable until some are answered
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+}
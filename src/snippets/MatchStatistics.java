@@ -0,0 +1,129 @@
+package snippets;
+
+/**
+ * {@link MatchRecorder} that adds up the {@link MatchMetrics} of every match
+ * and keeps a histogram of their latencies. Each match is added under one
+ * short lock, so sharing it across a parallel batch costs next to nothing
+ * next to the match itself. <br>
+ * Latencies are bucketed by powers of two nanoseconds; percentiles are
+ * reported as the upper end of their bucket, so they are at most twice the
+ * real value.
+ */
+public class MatchStatistics implements MatchRecorder {
+
+	private static final MatchRule[] RULES = MatchRule.values();
+
+	private long queries;
+	private long nanos;
+	private final long[] latencies = new long[64];
+	private final long[] candidates = new long[RULES.length];
+	private long levenshteinCalls;
+	private long levenshteinCells;
+	private final long[] levenshteinLengths = new long[MatchMetrics.LENGTH_BUCKETS];
+	private long weakMatches;
+
+	@Override
+	public synchronized void record(MatchMetrics metrics) {
+		queries++;
+		nanos += metrics.getNanos();
+		latencies[64 - Long.numberOfLeadingZeros(Math.max(
+				metrics.getNanos(), 1)) - 1]++;
+		for (MatchRule rule : RULES) {
+			candidates[rule.ordinal()] += metrics.getCandidates(rule);
+		}
+		levenshteinCalls += metrics.getLevenshteinCalls();
+		levenshteinCells += metrics.getLevenshteinCells();
+		for (int length = 0; length < levenshteinLengths.length; length++) {
+			levenshteinLengths[length] += metrics.getLevenshteinCalls(length);
+		}
+		weakMatches += metrics.getWeakMatches();
+	}
+
+	/**
+	 * @return the number of matches recorded
+	 */
+	public synchronized long getQueries() {
+		return queries;
+	}
+
+	/**
+	 * @return the total time spent matching
+	 */
+	public synchronized long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the latency that percentile of the matches took at most
+	 */
+	public synchronized long getLatencyNanos(double percentile) {
+		long rank = (long) Math.ceil(queries * percentile / 100);
+		long seen = 0;
+		for (int bucket = 0; bucket < latencies.length; bucket++) {
+			seen += latencies[bucket];
+			if (seen >= rank && seen > 0) {
+				return bucket == 62 ? Long.MAX_VALUE : (2L << bucket) - 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param exit
+	 * @return the number of candidates that left through the rule
+	 */
+	public synchronized long getCandidates(MatchRule exit) {
+		return candidates[exit.ordinal()];
+	}
+
+	/**
+	 * @return the number of Levenshtein distances computed
+	 */
+	public synchronized long getLevenshteinCalls() {
+		return levenshteinCalls;
+	}
+
+	/**
+	 * @see MatchMetrics#getLevenshteinCells()
+	 * @return the sum of the sizes of the Levenshtein distances computed
+	 */
+	public synchronized long getLevenshteinCells() {
+		return levenshteinCells;
+	}
+
+	/**
+	 * @see MatchMetrics#getLevenshteinCalls(int)
+	 * @param length
+	 *            of the longer string
+	 * @return the number of Levenshtein distances computed at that length
+	 */
+	public synchronized long getLevenshteinCalls(int length) {
+		return levenshteinLengths[Math.min(length,
+				MatchMetrics.LENGTH_BUCKETS - 1)];
+	}
+
+	/**
+	 * @return the number of user defined weak matches called
+	 */
+	public synchronized long getWeakMatches() {
+		return weakMatches;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append("queries=").append(queries);
+		s.append(" p50=").append(getLatencyNanos(50)).append("ns");
+		s.append(" p99=").append(getLatencyNanos(99)).append("ns");
+		for (MatchRule rule : RULES) {
+			s.append(' ').append(rule).append('=')
+					.append(candidates[rule.ordinal()]);
+		}
+		s.append(" levenshteinCalls=").append(levenshteinCalls);
+		s.append(" levenshteinCells=").append(levenshteinCells);
+		s.append(" weakMatches=").append(weakMatches);
+		return s.toString();
+	}
+}
@@ -1,13 +1,27 @@
 package snippets;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.time.DateUtils;
 
 /**
@@ -33,27 +47,56 @@ public class NameMatcher {
 
 	/**
 	 * Confidence Thresholds for triggering a match. If the current confidence
-	 * level is less than the threshold, a match will be attempted.
-	 * <ul>
-	 * <li>yearOfBirthThreshold = 5
-	 * <li>dayOfBirthThreshold = 5
-	 * <li>weakMatchThreshold = 5
-	 * </ul>
+	 * level is less than the threshold, a match will be attempted. See
+	 * {@link NameMatcherConfig} for the defaults.
 	 */
-	private Integer yearOfBirthThreshold = 5;
-	private Integer dayOfBirthThreshold = 5;
-	private Integer weakMatchThreshold = 5;
+	private final int yearOfBirthThreshold;
+	private final int dayOfBirthThreshold;
+	private final int weakMatchThreshold;
 
 	/**
 	 * Confidence Increment: how much to increase the confidence (defaults to 2)
 	 */
-	private Integer confidentIncrement = 2;
+	private final int confidentIncrement;
+
+	private final NameMatcherConfig config;
+
+	/**
+	 * The config's stages, cheapest first, in three slots around the built
+	 * in name distances: those run before the first name distance, those
+	 * run between it and the last name difference, and those run after it.
+	 * And the least the config's stages add together.
+	 */
+	private final ScoringStage[][] stages;
+	private final int stageMinimum;
+
+	/**
+	 * Least the date of birth rules add, by the rules a candidate passes. An
+	 * outcome whose threshold is no more than its increments never happens,
+	 * so it doesn't lower the least.
+	 */
+	private final int[] dateMinimum = new int[1 << 6];
+
+	/**
+	 * The distinct values of dateMinimum, smallest first.
+	 */
+	private final int[] dateTiers;
+
+	/**
+	 * Receives the metrics of every match, null when not recording.
+	 */
+	private final MatchRecorder recorder;
+
+	/**
+	 * Shared by every batch that doesn't bring its own executor.
+	 */
+	private static ForkJoinPool defaultExecutor;
 
 	/**
 	 * 
 	 */
 	public NameMatcher() {
-		super();
+		this(NameMatcherConfig.DEFAULT);
 	}
 
 	/**
@@ -69,19 +112,103 @@ public class NameMatcher {
 			Integer dayOfBirthThreshold, Integer weakMatchThreshold,
 			Integer hyphenatedDifference, Integer dobGenderDifference,
 			Integer confidentIncrement) {
+		this(new NameMatcherConfig(yearOfBirthThreshold, dayOfBirthThreshold,
+				weakMatchThreshold, confidentIncrement));
+	}
+
+	/**
+	 * A NameMatcher holds no state besides its configuration, so one instance
+	 * can match from any number of threads at once.
+	 * 
+	 * @param config
+	 *            the thresholds and increment used to match
+	 */
+	public NameMatcher(NameMatcherConfig config) {
+		this(config, null);
+	}
+
+	/**
+	 * A NameMatcher that reports what every match did (which rules the
+	 * candidates left through, the distances and weak matches computed and
+	 * how long it took) to the recorder.
+	 * 
+	 * @param config
+	 *            the thresholds and increment used to match
+	 * @param recorder
+	 *            receives the {@link MatchMetrics} of every match, e.g.
+	 *            {@link MatchStatistics}. Null to not record.
+	 */
+	public NameMatcher(NameMatcherConfig config, MatchRecorder recorder) {
 		super();
-		if (yearOfBirthThreshold != null && yearOfBirthThreshold > 0) {
-			this.yearOfBirthThreshold = yearOfBirthThreshold;
+		this.config = config;
+		this.recorder = recorder;
+		this.yearOfBirthThreshold = config.getYearOfBirthThreshold();
+		this.dayOfBirthThreshold = config.getDayOfBirthThreshold();
+		this.weakMatchThreshold = config.getWeakMatchThreshold();
+		this.confidentIncrement = config.getConfidentIncrement();
+
+		// A stage that costs the same as a name distance runs after it
+		List<ScoringStage> ordered = new ArrayList<ScoringStage>(
+				config.getStages());
+		Collections.sort(ordered, new Comparator<ScoringStage>() {
+			@Override
+			public int compare(ScoringStage a, ScoringStage b) {
+				return Integer.compare(a.getCost(), b.getCost());
+			}
+		});
+		int firstName = 0;
+		while (firstName < ordered.size()
+				&& ordered.get(firstName).getCost()
+						< ScoringStage.FIRST_NAME_COST) {
+			firstName++;
+		}
+		int lastName = firstName;
+		while (lastName < ordered.size()
+				&& ordered.get(lastName).getCost()
+						< ScoringStage.LAST_NAME_COST) {
+			lastName++;
 		}
-		if (dayOfBirthThreshold != null && dayOfBirthThreshold > 0) {
-			this.dayOfBirthThreshold = dayOfBirthThreshold;
+		ScoringStage[] none = new ScoringStage[0];
+		this.stages = new ScoringStage[][] {
+				ordered.subList(0, firstName).toArray(none),
+				ordered.subList(firstName, lastName).toArray(none),
+				ordered.subList(lastName, ordered.size()).toArray(none) };
+		int minimum = 0;
+		for (ScoringStage stage : config.getStages()) {
+			minimum += stage.getMinimum();
 		}
-		if (weakMatchThreshold != null && weakMatchThreshold > 0) {
-			this.weakMatchThreshold = weakMatchThreshold;
+		this.stageMinimum = minimum;
+
+		for (int rules = 0; rules < dateMinimum.length; rules++) {
+			boolean dayEquals = (rules & DAY_EQUALS) != 0;
+			if ((rules & DOB_EQUALS) != 0 && (rules & GENDER_EQUALS) != 0) {
+				dateMinimum[rules] = 0;
+			} else if ((rules & MONTH_EQUALS) != 0 && dayEquals
+					&& yearOfBirthThreshold > confidentIncrement) {
+				dateMinimum[rules] = confidentIncrement;
+			} else if ((rules & YEAR_EQUALS) != 0 && dayEquals
+					&& dayOfBirthThreshold > 2 * confidentIncrement) {
+				dateMinimum[rules] = 2 * confidentIncrement;
+			} else {
+				dateMinimum[rules] = 4 * confidentIncrement;
+			}
 		}
-		if (confidentIncrement != null && confidentIncrement > 0) {
-			this.confidentIncrement = confidentIncrement;
+		int[] tiers = dateMinimum.clone();
+		Arrays.sort(tiers);
+		int distinct = 0;
+		for (int tier : tiers) {
+			if (distinct == 0 || tiers[distinct - 1] != tier) {
+				tiers[distinct++] = tier;
+			}
 		}
+		this.dateTiers = Arrays.copyOf(tiers, distinct);
+	}
+
+	/**
+	 * @return the thresholds and increment used to match
+	 */
+	public NameMatcherConfig getConfig() {
+		return config;
 	}
 
 	/**
@@ -111,177 +238,1781 @@ public class NameMatcher {
 	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
 			List<PersonNameMatcher> sourcePersons, String alternateLastName,
 			int ceiling, int maxReturns) {
-		ArrayList<PersonConfidence> tempResults = new ArrayList<PersonConfidence>(
-				0);
+		return fuzzyNameMatch(person, sourcePersons.iterator(),
+				alternateLastName, ceiling, maxReturns);
+	}
+
+	/**
+	 * Do a match on the person against the given source persons, scoring them
+	 * as they are iterated. Only the best maxReturns are held at any time.
+	 * 
+	 * @see #fuzzyNameMatch(PersonNameMatcher, List, String, int, int)
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param sourcePersons
+	 *            - Iterable<{@link PersonNameMatcher}> of Persons to match
+	 *            against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			Iterable<? extends PersonNameMatcher> sourcePersons,
+			String alternateLastName, int ceiling, int maxReturns) {
+		return fuzzyNameMatch(person, sourcePersons.iterator(),
+				alternateLastName, ceiling, maxReturns);
+	}
+
+	/**
+	 * Do a match on the person against the given source persons, scoring them
+	 * as they are iterated (e.g. straight off a file or database cursor). Only
+	 * the best maxReturns are held at any time.
+	 * 
+	 * @see #fuzzyNameMatch(PersonNameMatcher, List, String, int, int)
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param sourcePersons
+	 *            - Iterator<{@link PersonNameMatcher}> of Persons to match
+	 *            against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			Iterator<? extends PersonNameMatcher> sourcePersons,
+			String alternateLastName, int ceiling, int maxReturns) {
 		if (maxReturns < 1) {
 			maxReturns = 1;
 		}
 		if (ceiling < 0) {
 			ceiling = 0;
 		}
-		ArrayList<PersonNameMatcher> results = new ArrayList<PersonNameMatcher>(
-				0);
-
-		Calendar personDOB = person.getDateOfBirth();
-		String personLast = person.getLastName();
-		String personFirst = person.getFirstName();
-		String personGender = person.getGender();
-		for (PersonNameMatcher candidate : sourcePersons) {
-			String candidateLast = candidate.getLastName();
-			String candidateFirst = candidate.getFirstName();
-			String candidateGender = candidate.getGender();
-			Calendar candidateDOB = candidate.getDateOfBirth();
-
-			int lastDiff = StringUtils.getLevenshteinDistance(candidateLast,
-					personLast);
-			int firstDiff = StringUtils.getLevenshteinDistance(candidateFirst,
-					personFirst);
-			int confidence = firstDiff;
-
-			if (lastDiff != 0) {
-				int[] diffs = new int[] { lastDiff };
-				int altDiff;
-				int hyphenated;
-				if (StringUtils.isNotEmpty(alternateLastName)) {
-					altDiff = StringUtils.getLevenshteinDistance(candidateLast,
-							alternateLastName);
-					diffs = ArrayUtils.add(diffs, altDiff);
-					hyphenated = checkForHyphenated(alternateLastName,
-							candidateLast);
-					if (hyphenated > -1) {
-						diffs = ArrayUtils.add(diffs, hyphenated);
-					}
-				}
-				hyphenated = checkForHyphenated(personLast, candidateLast);
-
-				if (hyphenated > -1) {
-					diffs = ArrayUtils.add(diffs, hyphenated);
-				}
 
-				confidence = confidence + NumberUtils.min(diffs);
+		PreparedPerson query = prepare(person, alternateLastName);
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		int ordinal = 0;
+		while (sourcePersons.hasNext()) {
+			PersonNameMatcher candidate = sourcePersons.next();
+			int confidence = confidence(query, candidate, best.bound());
+			if (confidence > -1) {
+				best.offer(candidate, confidence, ordinal);
 			}
+			ordinal++;
+		}
 
-			boolean genderEquals = StringUtils.equals(candidateGender,
-					personGender);
-			boolean dobEquals = DateUtils.truncatedEquals(candidateDOB,
-					personDOB, Calendar.DATE);
-			boolean dobYearEquals = DateUtils.truncatedEquals(candidateDOB,
-					personDOB, Calendar.YEAR);
-			boolean weakMatchEquals = person.weakMatch(candidate);
+		return finish(query, best, ordinal);
+	}
 
-			if (dobEquals && genderEquals) {
-				tempResults.add(new PersonConfidence(candidate, confidence));
-				continue;
-			}
-			confidence = confidence + confidentIncrement;
+	/**
+	 * Do a match on the person against the given source persons, scoring them
+	 * as the stream produces them. A parallel stream is split and scored on
+	 * fork/join, as {@link #fuzzyNameMatch(PersonNameMatcher, Spliterator,
+	 * String, int, int)}; a sequential one as it is iterated.
+	 * 
+	 * @see #fuzzyNameMatch(PersonNameMatcher, List, String, int, int)
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param sourcePersons
+	 *            - Stream<{@link PersonNameMatcher}> of Persons to match
+	 *            against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			Stream<? extends PersonNameMatcher> sourcePersons,
+			String alternateLastName, int ceiling, int maxReturns) {
+		if (sourcePersons.isParallel()) {
+			return fuzzyNameMatch(person, sourcePersons.spliterator(),
+					alternateLastName, ceiling, maxReturns);
+		}
+		return fuzzyNameMatch(person, sourcePersons.iterator(),
+				alternateLastName, ceiling, maxReturns);
+	}
 
-			// Year Difference
-			if (candidateDOB.get(Calendar.MONTH) == personDOB
-					.get(Calendar.MONTH)
-					&& candidateDOB.get(Calendar.DATE) == personDOB
-							.get(Calendar.DATE)
-					&& confidence < yearOfBirthThreshold) {
-				tempResults.add(new PersonConfidence(candidate, confidence));
-				continue;
-			}
-			confidence = confidence + confidentIncrement;
+	/**
+	 * Do a match on the person against the given source persons, splitting
+	 * them and scoring the parts on fork/join (the common pool, or the pool
+	 * the caller runs in). Each part holds only its best maxReturns; equal
+	 * confidences keep the spliterator's encounter order.
+	 * 
+	 * @see #fuzzyNameMatch(PersonNameMatcher, List, String, int, int)
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param sourcePersons
+	 *            - Spliterator<{@link PersonNameMatcher}> of Persons to match
+	 *            against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			Spliterator<? extends PersonNameMatcher> sourcePersons,
+			String alternateLastName, int ceiling, int maxReturns) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
 
-			// Month off or transposed days (e.g. 1/21/yyyy 1/12/yyyy)
-			if (dobYearEquals && confidence < dayOfBirthThreshold) {
-				if (candidateDOB.get(Calendar.DATE) == personDOB
-						.get(Calendar.DATE)) {
-					tempResults
-							.add(new PersonConfidence(candidate, confidence));
-					continue;
-				}
-				confidence = confidence + confidentIncrement;
-				String candidateDay = String.format("%02d",
-						candidateDOB.get(Calendar.DAY_OF_MONTH));
-				String personDay = String.format("%02d",
-						personDOB.get(Calendar.DAY_OF_MONTH));
+		int size = (int) Math.min(sourcePersons.getExactSizeIfKnown(),
+				Integer.MAX_VALUE);
+		PreparedPerson query = prepare(person, alternateLastName);
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		int maxDepth = 34 - Integer.numberOfLeadingZeros(parallelism);
+		SpliteratorMatch match = new SpliteratorMatch(query, sourcePersons,
+				ceiling, maxReturns, maxDepth);
+		return finish(query, match.invoke(), size);
+	}
 
-				candidateDay = StringUtils.reverse(candidateDay);
+	/**
+	 * Scores part of a spliterator, splitting it further while it is large
+	 * and there are processors left to give the parts to.
+	 */
+	private final class SpliteratorMatch extends RecursiveTask<BestMatches> {
 
-				if (StringUtils.equals(candidateDay, personDay)) {
-					tempResults.add(new PersonConfidence(candidate, confidence
-							+ confidentIncrement));
-					continue;
-				}
-			}
-			confidence = confidence + confidentIncrement;
+		private static final long serialVersionUID = 1L;
 
-			if (weakMatchEquals && confidence < weakMatchThreshold) {
-				tempResults.add(new PersonConfidence(candidate, confidence
-						+ confidentIncrement));
-				continue;
-			}
-			confidence = confidence + confidentIncrement;
+		/**
+		 * Parts smaller than this are not worth splitting.
+		 */
+		private static final long MIN_SPLIT = 1024;
 
-			tempResults.add(new PersonConfidence(candidate, confidence));
+		private final PreparedPerson query;
+		private final Spliterator<? extends PersonNameMatcher> sourcePersons;
+		private final int ceiling;
+		private final int maxReturns;
+		private final int depth;
+		private int scanned;
 
+		private SpliteratorMatch(PreparedPerson query,
+				Spliterator<? extends PersonNameMatcher> sourcePersons,
+				int ceiling, int maxReturns, int depth) {
+			this.query = query;
+			this.sourcePersons = sourcePersons;
+			this.ceiling = ceiling;
+			this.maxReturns = maxReturns;
+			this.depth = depth;
 		}
 
-		Collections.sort(tempResults);
-		if (tempResults.size() > 0) {
-			if (tempResults.size() < maxReturns) {
-				maxReturns = tempResults.size();
+		@Override
+		protected BestMatches compute() {
+			if (depth > 0 && sourcePersons.estimateSize() > MIN_SPLIT) {
+				Spliterator<? extends PersonNameMatcher> prefix = sourcePersons
+						.trySplit();
+				if (prefix != null) {
+					SpliteratorMatch first = new SpliteratorMatch(query,
+							prefix, ceiling, maxReturns, depth - 1);
+					SpliteratorMatch rest = new SpliteratorMatch(query,
+							sourcePersons, ceiling, maxReturns, depth - 1);
+					first.fork();
+					BestMatches restBest = rest.compute();
+					BestMatches best = first.join();
+					best.merge(restBest, first.scanned);
+					scanned = first.scanned + rest.scanned;
+					return best;
+				}
 			}
-			for (int i = 0; i < maxReturns; i++) {
-				PersonConfidence m = tempResults.get(i);
-				if (m.getConfidence() <= ceiling) {
-					results.add(m.getPerson());
+
+			// The metrics of a part are added to the whole once it is done
+			final PreparedPerson part = query.metrics == null ? query
+					: prepare(query.person, query.alternateLastName);
+			final BestMatches best = new BestMatches(ceiling, maxReturns);
+			sourcePersons.forEachRemaining(new Consumer<PersonNameMatcher>() {
+				@Override
+				public void accept(PersonNameMatcher candidate) {
+					int confidence = confidence(part, candidate, best.bound());
+					if (confidence > -1) {
+						best.offer(candidate, confidence, scanned);
+					}
+					scanned++;
 				}
+			});
+			if (part != query) {
+				query.metrics.add(part.metrics);
 			}
+			return best;
 		}
-
-		return results;
 	}
 
-	private int checkForHyphenated(String personLast, String candidateLast) {
-
-		if (StringUtils.contains(personLast, "-")
-				|| StringUtils.contains(candidateLast, "-")
-				|| StringUtils.contains(personLast, " ")
-				|| StringUtils.contains(candidateLast, " ")) {
-			// Check for mixed up or missing hyphenated names
+	/**
+	 * Do a match on the person against the candidates the index finds for it.
+	 * Only return the best found match. (0 == perfect match) <br>
+	 * Confidences are the same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, List, String, int, int)}; only
+	 * source persons the index leaves out are never considered.
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param index
+	 *            - {@link CandidateIndex} over the Persons to match against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			CandidateIndex index, String alternateLastName, int ceiling,
+			int maxReturns) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
 
-			ArrayList<String> memberParts = new ArrayList<String>(0);
-			String[] parts = StringUtils.split(candidateLast, '-');
-			for (int i = 0; i < parts.length; i++) {
-				memberParts.add(parts[i]);
-			}
-			parts = StringUtils.split(candidateLast, ' ');
-			for (int i = 0; i < parts.length; i++) {
-				memberParts.add(parts[i]);
+		PreparedPerson query = prepare(person, alternateLastName);
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		for (int ordinal : index.candidates(person, alternateLastName, ceiling)) {
+			PersonNameMatcher candidate = index.getPerson(ordinal);
+			int confidence = confidence(query, candidate, best.bound());
+			if (confidence > -1) {
+				best.offer(candidate, confidence, ordinal);
 			}
+		}
 
-			ArrayList<String> claimParts = new ArrayList<String>(0);
-			parts = StringUtils.split(personLast, '-');
-			for (int i = 0; i < parts.length; i++) {
-				claimParts.add(parts[i]);
-			}
-			parts = StringUtils.split(personLast, ' ');
-			for (int i = 0; i < parts.length; i++) {
-				claimParts.add(parts[i]);
-			}
+		return finish(query, best, index.size());
+	}
+
+	/**
+	 * Do a match on the person against prepared source persons. Only return
+	 * the best found match. (0 == perfect match) <br>
+	 * Confidences are the same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, List, String, int, int)}, with
+	 * dates compared as described on {@link PreparedCandidates}. <br>
+	 * Nothing is allocated per candidate, only for the person and the
+	 * results, as long as no name is over 64 characters and there is no
+	 * {@link MatchRecorder} or {@link ScoringStage} that allocates.
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param candidates
+	 *            - {@link PreparedCandidates} the Persons to match against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			PreparedCandidates candidates, String alternateLastName,
+			int ceiling, int maxReturns) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
+
+		PreparedPerson query = prepare(person, alternateLastName,
+				candidates.normalized);
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		scan(query, candidates, best, 0);
+
+		return finish(query, best, candidates.size());
+	}
 
-			ArrayList<Integer> lastNameConfidences = new ArrayList<Integer>(0);
+	/**
+	 * Do a match on the person against prepared source persons, scoring only
+	 * the candidates whose date of birth and gender can still get under the
+	 * ceiling, as found in the index's bitmaps. Only return the best found
+	 * match. (0 == perfect match) <br>
+	 * The same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+	 * , only faster at ceilings under four confident increments.
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param index
+	 *            - {@link BirthDateIndex} over the Persons to match against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			BirthDateIndex index, String alternateLastName, int ceiling,
+			int maxReturns) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
 
-			for (String claimPart : claimParts) {
-				for (String memberPart : memberParts) {
-					lastNameConfidences.add(StringUtils.getLevenshteinDistance(
-							claimPart, memberPart));
+		PreparedCandidates candidates = index.candidates;
+		PreparedPerson query = prepare(person, alternateLastName,
+				candidates.normalized);
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		int least = ceiling - stageMinimum;
+		if (least >= dateMinimum[0]) {
+			// Every candidate can get under the ceiling
+			scan(query, candidates, best, 0);
+		} else {
+			byte gender = candidates.genderCode(query.gender);
+			for (int ordinal : reachable(query, index, gender, least)
+					.toArray()) {
+				int confidence = confidence(query, candidates, ordinal,
+						gender, best.bound());
+				if (confidence > -1) {
+					best.offer(candidates.persons[ordinal], confidence,
+							ordinal);
 				}
 			}
+		}
 
-			int[] conf = ArrayUtils.toPrimitive(lastNameConfidences
-					.toArray(new Integer[0]));
+		return finish(query, best, index.size());
+	}
 
-			return NumberUtils.min(conf);
+	/**
+	 * Do a match on the person against prepared source persons, stopping
+	 * once the timeout has passed. The candidates most likely to match are
+	 * scored first: those born on the same date, then on the same month and
+	 * day, then on the same year and day, then the rest. <br>
+	 * A complete result is the same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+	 * ; a partial one is the best of the candidates scored. The time is
+	 * checked every {@value #BLOCK} candidates, so the match can run over
+	 * the timeout by as long as scoring that many takes.
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param candidates
+	 *            - {@link PreparedCandidates} the Persons to match against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @param timeout
+	 *            how long to match for
+	 * @param unit
+	 *            of the timeout
+	 * @return {@link MatchResult} the persons that may match the given
+	 *         PersonNameMatcher, and whether every candidate was scored.
+	 */
+	public MatchResult fuzzyNameMatch(PersonNameMatcher person,
+			PreparedCandidates candidates, String alternateLastName,
+			int ceiling, int maxReturns, long timeout, TimeUnit unit) {
+		return matchUntil(person, candidates, alternateLastName, ceiling,
+				maxReturns, System.nanoTime() + unit.toNanos(timeout), null);
+	}
 
-		}
+	/**
+	 * Start a match on the person against prepared source persons with a
+	 * timeout, on the default executor.
+	 * 
+	 * @see #fuzzyNameMatchAsync(PersonNameMatcher, PreparedCandidates,
+	 *      String, int, int, long, TimeUnit, Executor)
+	 */
+	public CompletableFuture<MatchResult> fuzzyNameMatchAsync(
+			PersonNameMatcher person, PreparedCandidates candidates,
+			String alternateLastName, int ceiling, int maxReturns,
+			long timeout, TimeUnit unit) {
+		return fuzzyNameMatchAsync(person, candidates, alternateLastName,
+				ceiling, maxReturns, timeout, unit, defaultExecutor());
+	}
 
-		return -1;
+	/**
+	 * Start a match on the person against prepared source persons with a
+	 * timeout, on the given executor. The timeout counts from this call,
+	 * waiting for the executor included. Cancelling the future, or
+	 * completing it some other way, stops the match the next time it checks
+	 * the time.
+	 * 
+	 * @see #fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String,
+	 *      int, int, long, TimeUnit)
+	 * @param executor
+	 *            runs the match
+	 * @return CompletableFuture<{@link MatchResult}> completed with the
+	 *         result, or with the exception the match threw
+	 */
+	public CompletableFuture<MatchResult> fuzzyNameMatchAsync(
+			final PersonNameMatcher person,
+			final PreparedCandidates candidates,
+			final String alternateLastName, final int ceiling,
+			final int maxReturns, long timeout, TimeUnit unit,
+			Executor executor) {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		final CompletableFuture<MatchResult> future = new CompletableFuture<MatchResult>();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+				try {
+					future.complete(matchUntil(person, candidates,
+							alternateLastName, ceiling, maxReturns, deadline,
+							future));
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+				} catch (Error e) {
+					future.completeExceptionally(e);
+					throw e;
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * @param deadline
+	 *            {@link System#nanoTime()} to stop at
+	 * @param stop
+	 *            stops the match once done, if not null
+	 */
+	private MatchResult matchUntil(PersonNameMatcher person,
+			PreparedCandidates candidates, String alternateLastName,
+			int ceiling, int maxReturns, long deadline, Future<?> stop) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
+
+		PreparedPerson query = prepare(person, alternateLastName,
+				candidates.normalized);
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		boolean complete = scanMostLikelyFirst(query, candidates, best,
+				deadline, stop);
+
+		return new MatchResult(finish(query, best, candidates.size()),
+				complete);
+	}
+
+	/**
+	 * Match several persons against prepared source persons in one pass over
+	 * them, each with its own alternate last name, ceiling and maxReturns.
+	 * Confidences are the same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+	 * ; this is for grouping matches that arrive together, e.g. in
+	 * {@link MatchServer}.
+	 * 
+	 * @return the best matches of each person with their confidences and
+	 *         ordinals, in the same order as the persons
+	 */
+	List<List<PersonConfidence>> fuzzyNameMatchGroup(
+			PersonNameMatcher[] persons, String[] alternateLastNames,
+			int[] ceilings, int[] maxReturns, PreparedCandidates candidates) {
+		PreparedPerson[] queries = new PreparedPerson[persons.length];
+		BestMatches[] bests = new BestMatches[persons.length];
+		for (int p = 0; p < persons.length; p++) {
+			queries[p] = prepare(persons[p], alternateLastNames[p],
+					candidates.normalized);
+			bests[p] = new BestMatches(Math.max(ceilings[p], 0), Math.max(
+					maxReturns[p], 1));
+		}
+		scan(queries, candidates, bests, 0);
+
+		List<List<PersonConfidence>> results = new ArrayList<List<PersonConfidence>>(
+				persons.length);
+		for (int p = 0; p < persons.length; p++) {
+			results.add(bests[p].getMatches());
+			record(queries[p], bests[p], candidates.size());
+		}
+		return results;
+	}
+
+	/**
+	 * Do a match on the person against the source persons as they are when
+	 * the match starts; changes made meanwhile are not seen. Only return the
+	 * best found match. (0 == perfect match) <br>
+	 * Confidences are the same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+	 * .
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param candidates
+	 *            - {@link LiveCandidates} the Persons to match against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			LiveCandidates<?> candidates, String alternateLastName,
+			int ceiling, int maxReturns) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
+
+		PreparedPerson query = prepare(person, alternateLastName,
+				candidates.isNormalized());
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		int scanned = 0;
+		for (PreparedCandidates segment : candidates.snapshot()) {
+			scan(query, segment, best, scanned);
+			scanned += segment.size();
+		}
+
+		return finish(query, best, scanned);
+	}
+
+	/**
+	 * Do a match on the person against source persons mapped from a file.
+	 * Only return the best found match. (0 == perfect match) <br>
+	 * Confidences are the same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+	 * ; only source persons that share no block with the person are never
+	 * considered, when the file was written with blocks, and no source person
+	 * weak matches: the person's weakMatch is never called.
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param candidates
+	 *            - {@link MappedCandidates} the Persons to match against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> the
+	 *         {@link MappedCandidates.Candidate}s that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			MappedCandidates candidates, String alternateLastName,
+			int ceiling, int maxReturns) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
+
+		PreparedPerson query = prepare(person, alternateLastName);
+		byte gender = candidates.genderCode(person.getGender());
+		MappedCandidates.Candidate flyweight = candidates.flyweight();
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		if (candidates.isBlocked()) {
+			for (int ordinal : candidates.candidates(person,
+					alternateLastName, ceiling)) {
+				offer(query, candidates, ordinal, gender, flyweight, best);
+			}
+		} else {
+			for (int ordinal = 0; ordinal < candidates.size(); ordinal++) {
+				offer(query, candidates, ordinal, gender, flyweight, best);
+			}
+		}
+
+		return finish(query, best, candidates.size());
+	}
+
+	private void offer(PreparedPerson query, MappedCandidates candidates,
+			int ordinal, byte gender, MappedCandidates.Candidate flyweight,
+			BestMatches best) {
+		int confidence = confidence(query, candidates, ordinal, gender,
+				flyweight, best.bound());
+		if (confidence > -1) {
+			best.offer(candidates.getPerson(ordinal), confidence, ordinal);
+		}
+	}
+
+	/**
+	 * Do a match on the person against sharded source persons, matching the
+	 * shards that can hold a match under the ceiling in parallel. Only return
+	 * the best found match. (0 == perfect match) <br>
+	 * Confidences and the order of equal confidences are the same as
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, PreparedCandidates, String, int, int)}
+	 * ; the shards left out can't hold a match under the ceiling.
+	 * 
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person to match.
+	 * @param candidates
+	 *            - {@link ShardedCandidates} the Persons to match against
+	 * @param alternateLastName
+	 *            - A last name that may be used in place of another last name
+	 *            (Common when one spouse doesn't change last name, and children
+	 *            get the other's name)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return (0 or less defaults to 1).
+	 * @return List<{@link PersonNameMatcher}> person that may match the given
+	 *         PersonNameMatcher.
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			ShardedCandidates candidates, String alternateLastName,
+			int ceiling, int maxReturns) {
+		return fuzzyNameMatch(person, candidates, alternateLastName, ceiling,
+				maxReturns, defaultExecutor());
+	}
+
+	/**
+	 * Do a match on the person against sharded source persons, matching the
+	 * shards on the given executor.
+	 * 
+	 * @see #fuzzyNameMatch(PersonNameMatcher, ShardedCandidates, String, int,
+	 *      int)
+	 * @param executor
+	 *            runs the shards, e.g. a {@link ForkJoinPool}
+	 */
+	public List<PersonNameMatcher> fuzzyNameMatch(PersonNameMatcher person,
+			ShardedCandidates candidates, String alternateLastName,
+			int ceiling, int maxReturns, ExecutorService executor) {
+		if (maxReturns < 1) {
+			maxReturns = 1;
+		}
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
+
+		final boolean normalize = candidates.isNormalized();
+		final PreparedPerson query = prepare(person, alternateLastName,
+				normalize);
+		List<ShardedCandidates.Shard> routed = new ArrayList<ShardedCandidates.Shard>();
+		for (ShardedCandidates.Shard shard : candidates.shards()) {
+			if (shard.ordinals.length > 0
+					&& shardMinimum(query, shard) <= ceiling - stageMinimum) {
+				routed.add(shard);
+			}
+		}
+
+		final BestMatches[] shardBests = new BestMatches[routed.size()];
+		if (routed.size() == 1) {
+			shardBests[0] = new BestMatches(ceiling, maxReturns);
+			scan(query, routed.get(0).candidates, shardBests[0], 0);
+		} else {
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+					routed.size());
+			for (int i = 0; i < shardBests.length; i++) {
+				final PreparedCandidates shardCandidates = routed.get(i).candidates;
+				final BestMatches shardBest = new BestMatches(ceiling,
+						maxReturns);
+				shardBests[i] = shardBest;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						// The metrics of a shard are added to the whole once
+						// it is done
+						PreparedPerson part = query.metrics == null ? query
+								: prepare(query.person, query.alternateLastName,
+										normalize);
+						scan(part, shardCandidates, shardBest, 0);
+						if (part != query) {
+							query.metrics.add(part.metrics);
+						}
+						return null;
+					}
+				});
+			}
+			run(tasks, executor);
+		}
+
+		BestMatches best = new BestMatches(ceiling, maxReturns);
+		for (int i = 0; i < shardBests.length; i++) {
+			best.merge(shardBests[i], routed.get(i).ordinals);
+		}
+		return finish(query, best, candidates.size());
+	}
+
+	/**
+	 * The least the date of birth and gender rules add for any candidate in
+	 * the shard. Only candidates born on the person's day of the month can
+	 * get less than the most.
+	 */
+	private int shardMinimum(PreparedPerson person,
+			ShardedCandidates.Shard shard) {
+		if (!shard.hasDay(person.day)) {
+			return dateMinimum[0];
+		}
+		if (shard.hasEpochDay(person.epochDay)) {
+			return dateMinimum[GENDER_EQUALS | DOB_EQUALS | YEAR_EQUALS
+					| MONTH_EQUALS | DAY_EQUALS];
+		}
+		int least = dateMinimum[0];
+		if (shard.hasMonthDay(person.month, person.day)) {
+			least = Math.min(least, dateMinimum[MONTH_EQUALS | DAY_EQUALS]);
+		}
+		if (shard.hasYearDay(person.year, person.day)) {
+			least = Math.min(least, dateMinimum[YEAR_EQUALS | DAY_EQUALS]);
+		}
+		return least;
+	}
+
+	/**
+	 * The candidates in the index whose date of birth and gender rules add
+	 * no more than least: the union, over the outcomes that fit, of the
+	 * candidates passing each outcome's rules.
+	 */
+	private OrdinalBitmap reachable(PreparedPerson person,
+			BirthDateIndex index, byte gender, int least) {
+		OrdinalBitmap day = index.day(person.day);
+		OrdinalBitmap reachable = OrdinalBitmap.EMPTY;
+		if (dateMinimum[GENDER_EQUALS | DOB_EQUALS | YEAR_EQUALS
+				| MONTH_EQUALS | DAY_EQUALS] <= least) {
+			reachable = day.and(index.year(person.year))
+					.and(index.month(person.month))
+					.and(index.gender(gender));
+		}
+		if (dateMinimum[MONTH_EQUALS | DAY_EQUALS] <= least) {
+			reachable = reachable.or(day.and(index.month(person.month)));
+		}
+		if (dateMinimum[YEAR_EQUALS | DAY_EQUALS] <= least) {
+			reachable = reachable.or(day.and(index.year(person.year)));
+		}
+		return reachable;
+	}
+
+	/**
+	 * Match every person against the same source persons, spread over the
+	 * processors. Equivalent to calling
+	 * {@link #fuzzyNameMatch(PersonNameMatcher, List, String, int, int)} for
+	 * each person in turn, except the source persons are prepared once as
+	 * {@link PreparedCandidates} and shared by the whole batch.
+	 * 
+	 * @param persons
+	 *            - List<{@link PersonNameMatcher}> the persons to match.
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 * @param alternateLastNames
+	 *            - the alternate last name for each person, in the same order
+	 *            as the persons (null for none at all)
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed. 0 is a perfect match.
+	 *            (negative numbers default to 0)
+	 * @param maxReturns
+	 *            Maximum number of persons to return per person (0 or less
+	 *            defaults to 1).
+	 * @return the matches for each person, in the same order as the persons
+	 */
+	public List<List<PersonNameMatcher>> fuzzyNameMatchAll(
+			List<PersonNameMatcher> persons,
+			List<PersonNameMatcher> sourcePersons,
+			List<String> alternateLastNames, int ceiling, int maxReturns) {
+		return fuzzyNameMatchAll(persons, sourcePersons, alternateLastNames,
+				ceiling, maxReturns, defaultExecutor());
+	}
+
+	/**
+	 * Match every person against the same source persons on the given
+	 * executor.
+	 * 
+	 * @see #fuzzyNameMatchAll(List, List, List, int, int)
+	 * @param executor
+	 *            runs the matching, e.g. a {@link ForkJoinPool}
+	 */
+	public List<List<PersonNameMatcher>> fuzzyNameMatchAll(
+			List<PersonNameMatcher> persons,
+			List<PersonNameMatcher> sourcePersons,
+			List<String> alternateLastNames, final int ceiling,
+			final int maxReturns, ExecutorService executor) {
+		final PreparedCandidates candidates = new PreparedCandidates(
+				sourcePersons);
+		return matchAll(persons, alternateLastNames, new BatchMatch() {
+			@Override
+			public List<PersonNameMatcher> match(PersonNameMatcher person,
+					String alternateLastName) {
+				return fuzzyNameMatch(person, candidates, alternateLastName,
+						ceiling, maxReturns);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Match every person against the candidates the index finds for it,
+	 * spread over the processors. The index is shared by the whole batch.
+	 * 
+	 * @see #fuzzyNameMatchAll(List, List, List, int, int)
+	 * @param index
+	 *            - {@link CandidateIndex} over the Persons to match against
+	 */
+	public List<List<PersonNameMatcher>> fuzzyNameMatchAll(
+			List<PersonNameMatcher> persons, CandidateIndex index,
+			List<String> alternateLastNames, int ceiling, int maxReturns) {
+		return fuzzyNameMatchAll(persons, index, alternateLastNames, ceiling,
+				maxReturns, defaultExecutor());
+	}
+
+	/**
+	 * Match every person against the candidates the index finds for it on
+	 * the given executor.
+	 * 
+	 * @see #fuzzyNameMatchAll(List, CandidateIndex, List, int, int)
+	 * @param executor
+	 *            runs the matching, e.g. a {@link ForkJoinPool}
+	 */
+	public List<List<PersonNameMatcher>> fuzzyNameMatchAll(
+			List<PersonNameMatcher> persons, final CandidateIndex index,
+			List<String> alternateLastNames, final int ceiling,
+			final int maxReturns, ExecutorService executor) {
+		return matchAll(persons, alternateLastNames, new BatchMatch() {
+			@Override
+			public List<PersonNameMatcher> match(PersonNameMatcher person,
+					String alternateLastName) {
+				return fuzzyNameMatch(person, index, alternateLastName,
+						ceiling, maxReturns);
+			}
+		}, executor);
+	}
+
+	/**
+	 * One person's match within a batch.
+	 */
+	private interface BatchMatch {
+		List<PersonNameMatcher> match(PersonNameMatcher person,
+				String alternateLastName);
+	}
+
+	private static synchronized ForkJoinPool defaultExecutor() {
+		if (defaultExecutor == null) {
+			defaultExecutor = new ForkJoinPool();
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Split the persons into a few chunks per processor, match the chunks on
+	 * the executor and put the results back in the order of the persons.
+	 */
+	private static List<List<PersonNameMatcher>> matchAll(
+			List<PersonNameMatcher> persons, List<String> alternateLastNames,
+			final BatchMatch batchMatch, ExecutorService executor) {
+		final PersonNameMatcher[] batch = persons
+				.toArray(new PersonNameMatcher[persons.size()]);
+		final String[] alternates = new String[batch.length];
+		if (alternateLastNames != null) {
+			if (alternateLastNames.size() != batch.length) {
+				throw new IllegalArgumentException(
+						"There must be one alternate last name per person");
+			}
+			alternateLastNames.toArray(alternates);
+		}
+		// Set by index from the chunks, so never resized
+		final List<List<PersonNameMatcher>> results = new ArrayList<List<PersonNameMatcher>>(
+				Collections.<List<PersonNameMatcher>> nCopies(batch.length,
+						null));
+
+		int chunks = Math.min(batch.length, Runtime.getRuntime()
+				.availableProcessors() * 4);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			final int from = (int) ((long) batch.length * chunk / chunks);
+			final int to = (int) ((long) batch.length * (chunk + 1) / chunks);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = from; i < to; i++) {
+						results.set(i, batchMatch.match(batch[i],
+								alternates[i]));
+					}
+					return null;
+				}
+			});
+		}
+
+		run(tasks, executor);
+		return results;
+	}
+
+	/**
+	 * Find the duplicates within one list of persons: every pair of persons
+	 * that match each other under the ceiling is joined into one cluster, and
+	 * clusters sharing a person are joined too. Each pair is scored once, with
+	 * the earlier person as the person and the later as the candidate. The
+	 * pairs are found through a {@link NameTreeIndex}, so none is missed.
+	 * <br>
+	 * Each person's search for its pairs is recorded as a match with
+	 * maxReturns 0, as it keeps every pair under the ceiling.
+	 * 
+	 * @param persons
+	 *            - List<{@link PersonNameMatcher}> the persons to cluster.
+	 * @param ceiling
+	 *            Highest level of uncertainty allowed for a pair. 0 is a
+	 *            perfect match. (negative numbers default to 0)
+	 * @return for each person, in the same order, the position of the first
+	 *         person in its cluster (its own position if it has no
+	 *         duplicates)
+	 */
+	public int[] fuzzyNameClusters(List<PersonNameMatcher> persons,
+			int ceiling) {
+		return fuzzyNameClusters(persons, new NameTreeIndex(persons),
+				ceiling, defaultExecutor());
+	}
+
+	/**
+	 * Find the duplicates within one list of persons, looking for each
+	 * person's pairs among the candidates the index finds for it (e.g. a
+	 * {@link PersonIndex} to only pair persons sharing a block).
+	 * 
+	 * @see #fuzzyNameClusters(List, int)
+	 * @param index
+	 *            - {@link CandidateIndex} built over the same persons, in the
+	 *            same order
+	 * @param executor
+	 *            runs the pairing, e.g. a {@link ForkJoinPool}
+	 */
+	public int[] fuzzyNameClusters(List<PersonNameMatcher> persons,
+			final CandidateIndex index, int ceiling, ExecutorService executor) {
+		if (index.size() != persons.size()) {
+			throw new IllegalArgumentException(
+					"The index must be built over the persons");
+		}
+		final int pairCeiling = ceiling < 0 ? 0 : ceiling;
+		final PreparedCandidates candidates = new PreparedCandidates(persons);
+		final int size = candidates.size();
+
+		// Later persons have fewer pairs left to score, so every chunk takes
+		// persons from all over the list
+		final int chunks = Math.min(size, Runtime.getRuntime()
+				.availableProcessors() * 16);
+		final OrdinalList[] pairs = new OrdinalList[chunks];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			final int first = chunk;
+			pairs[chunk] = new OrdinalList();
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = first; i < size; i += chunks) {
+						PersonNameMatcher person = candidates.persons[i];
+						PreparedPerson query = prepare(person, null);
+						byte gender = candidates.genderCode(person.getGender());
+						for (int j : index.candidates(person, null, pairCeiling)) {
+							if (j > i
+									&& confidence(query, candidates, j, gender,
+											pairCeiling) > -1) {
+								pairs[first].add(i);
+								pairs[first].add(j);
+							}
+						}
+						// Every pair under the ceiling, not a best few
+						record(query, pairCeiling, 0, size);
+					}
+					return null;
+				}
+			});
+		}
+		run(tasks, executor);
+
+		DisjointSets clusters = new DisjointSets(size);
+		for (OrdinalList chunkPairs : pairs) {
+			for (int i = 0; i < chunkPairs.size(); i += 2) {
+				clusters.union(chunkPairs.get(i), chunkPairs.get(i + 1));
+			}
+		}
+		return clusters.representatives();
+	}
+
+	/**
+	 * Run the tasks on the executor and wait for all of them, passing on the
+	 * first failure.
+	 */
+	private static void run(List<Callable<Void>> tasks,
+			ExecutorService executor) {
+		try {
+			for (Future<Void> done : executor.invokeAll(tasks)) {
+				done.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while matching", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * The person being matched, with everything that doesn't depend on the
+	 * candidate worked out once per match.
+	 */
+	private static final class PreparedPerson {
+		private final PersonNameMatcher person;
+		private final String lastName;
+		private final LevenshteinPattern lastNamePattern;
+		private final LevenshteinPattern[] lastNameParts;
+		private final String firstName;
+		private final LevenshteinPattern firstNamePattern;
+		private final String alternateLastName;
+		private final LevenshteinPattern alternateLastNamePattern;
+		private final LevenshteinPattern[] alternateLastNameParts;
+		private final String gender;
+		private final Calendar dateOfBirth;
+		private final int epochDay;
+		private final int year;
+		private final int month;
+		private final int day;
+		private final MatchMetrics metrics;
+
+		private PreparedPerson(PersonNameMatcher person,
+				String alternateLastName, boolean normalize,
+				MatchMetrics metrics) {
+			this.person = person;
+			this.metrics = metrics;
+			this.lastName = normalize ? NameNormalizer.normalize(person
+					.getLastName()) : person.getLastName();
+			this.lastNamePattern = new LevenshteinPattern(lastName);
+			this.lastNameParts = patterns(lastNameParts(lastName));
+			this.firstName = normalize ? NameNormalizer.normalize(person
+					.getFirstName()) : person.getFirstName();
+			this.firstNamePattern = new LevenshteinPattern(firstName);
+			if (normalize) {
+				alternateLastName = NameNormalizer.normalize(alternateLastName);
+			}
+			if (StringUtils.isNotEmpty(alternateLastName)) {
+				this.alternateLastName = alternateLastName;
+				this.alternateLastNamePattern = new LevenshteinPattern(
+						alternateLastName);
+				this.alternateLastNameParts = patterns(lastNameParts(
+						alternateLastName));
+			} else {
+				this.alternateLastName = null;
+				this.alternateLastNamePattern = null;
+				this.alternateLastNameParts = null;
+			}
+			this.gender = person.getGender();
+			this.dateOfBirth = person.getDateOfBirth();
+			if (dateOfBirth == null) {
+				throw new IllegalArgumentException(
+						"The date of birth must not be null");
+			}
+			this.year = dateOfBirth.get(Calendar.YEAR);
+			this.month = dateOfBirth.get(Calendar.MONTH);
+			this.day = dateOfBirth.get(Calendar.DATE);
+			this.epochDay = PreparedCandidates.epochDay(year, month, day);
+		}
+
+		private static LevenshteinPattern[] patterns(String[] names) {
+			if (names == null) {
+				return null;
+			}
+			LevenshteinPattern[] patterns =
+					new LevenshteinPattern[names.length];
+			for (int i = 0; i < names.length; i++) {
+				patterns[i] = new LevenshteinPattern(names[i]);
+			}
+			return patterns;
+		}
+	}
+
+	private PreparedPerson prepare(PersonNameMatcher person,
+			String alternateLastName) {
+		return prepare(person, alternateLastName, false);
+	}
+
+	/**
+	 * @param normalize
+	 *            put the names in the form of {@link NameNormalizer}, to
+	 *            match against candidates kept in that form
+	 */
+	private PreparedPerson prepare(PersonNameMatcher person,
+			String alternateLastName, boolean normalize) {
+		return new PreparedPerson(person, alternateLastName, normalize,
+				recorder == null ? null : new MatchMetrics());
+	}
+
+	/**
+	 * @param sourceSize
+	 *            number of source persons matched against, -1 if not known
+	 */
+	private List<PersonNameMatcher> finish(PreparedPerson person,
+			BestMatches best, int sourceSize) {
+		List<PersonNameMatcher> results = best.getPersons();
+		record(person, best, sourceSize);
+		return results;
+	}
+
+	private void record(PreparedPerson person, BestMatches best,
+			int sourceSize) {
+		record(person, best.getCeiling(), best.getMaxReturns(), sourceSize);
+	}
+
+	private void record(PreparedPerson person, int ceiling, int maxReturns,
+			int sourceSize) {
+		if (person.metrics != null) {
+			person.metrics.finish(person.person, person.alternateLastName,
+					ceiling, maxReturns, sourceSize);
+			recorder.record(person.metrics);
+		}
+	}
+
+	/**
+	 * Count the candidate as leaving through the rule, or as rejected when
+	 * over the bound.
+	 * 
+	 * @return the confidence, or -1 if it is greater than the bound.
+	 */
+	private static int exit(PreparedPerson person, MatchRule rule,
+			int confidence, int bound) {
+		if (confidence > bound) {
+			return reject(person);
+		}
+		if (person.metrics != null) {
+			person.metrics.candidate(rule);
+		}
+		return confidence;
+	}
+
+	private static int reject(PreparedPerson person) {
+		if (person.metrics != null) {
+			person.metrics.candidate(MatchRule.REJECTED);
+		}
+		return -1;
+	}
+
+	/**
+	 * Distance from one of the person's names to a candidate's name. Names
+	 * whose grams already put them over the threshold are not counted as
+	 * distances computed.
+	 * 
+	 * @param sGrams
+	 *            grams of the candidate's name, or NO_GRAMS if not known
+	 */
+	private static int distance(PreparedPerson person, CharSequence s,
+			long sGrams, LevenshteinPattern t, int threshold) {
+		if (threshold >= 0
+				&& LevenshteinPattern.lowerBound(t.getGrams(), sGrams)
+						> threshold) {
+			return -1;
+		}
+		int distance = t.distance(s, threshold);
+		if (person.metrics != null) {
+			person.metrics.levenshtein(s, t.getPattern());
+		}
+		return distance;
+	}
+
+	/**
+	 * Date of birth and gender rules the candidate passes, as a bit set.
+	 */
+	private static final int GENDER_EQUALS = 1;
+	private static final int DOB_EQUALS = 1 << 1;
+	private static final int YEAR_EQUALS = 1 << 2;
+	private static final int MONTH_EQUALS = 1 << 3;
+	private static final int DAY_EQUALS = 1 << 4;
+	private static final int DAY_TRANSPOSED = 1 << 5;
+
+	/**
+	 * Candidates whose date of birth and gender rules are compared in one go
+	 * before any of them is scored.
+	 */
+	private static final int BLOCK = 256;
+
+	/**
+	 * Score every prepared candidate, a block at a time: the rules of the
+	 * whole block are computed first in straight loops over the date and
+	 * gender columns, with no branches the JIT can't turn into vector
+	 * instructions. Then only the candidates whose least date of birth
+	 * outcome still fits under the bound are scored on their names. The
+	 * bound only goes down while the block is scored, so those left out
+	 * would have been rejected anyway.
+	 * 
+	 * @param offset
+	 *            ordinal of the first candidate, for ordering ties
+	 */
+	private void scan(PreparedPerson person, PreparedCandidates candidates,
+			BestMatches best, int offset) {
+		scan(new PreparedPerson[] { person }, candidates,
+				new BestMatches[] { best }, offset);
+	}
+
+	/**
+	 * Score every prepared candidate for several persons in one pass: each
+	 * block is scored for every person before the next block is read, so the
+	 * candidates are read from memory once for all of them.
+	 * 
+	 * @see #scan(PreparedPerson, PreparedCandidates, BestMatches, int)
+	 */
+	private void scan(PreparedPerson[] persons, PreparedCandidates candidates,
+			BestMatches[] bests, int offset) {
+		int[] genders = new int[persons.length];
+		for (int p = 0; p < persons.length; p++) {
+			genders[p] = candidates.genderCode(persons[p].gender);
+		}
+		int[] rules = new int[BLOCK];
+		int size = candidates.size();
+		for (int start = 0; start < size; start += BLOCK) {
+			int end = Math.min(size, start + BLOCK);
+			for (int p = 0; p < persons.length; p++) {
+				PreparedPerson person = persons[p];
+				BestMatches best = bests[p];
+				dateRules(person, candidates, genders[p], start, end, rules);
+
+				int least = best.bound() - stageMinimum;
+				for (int ordinal = start; ordinal < end; ordinal++) {
+					int candidateRules = rules[ordinal - start];
+					if (dateMinimum[candidateRules] > least) {
+						reject(person);
+						continue;
+					}
+					int confidence = confidenceAt(person, candidates,
+							ordinal, candidateRules, best.bound());
+					if (confidence > -1) {
+						best.offer(candidates.persons[ordinal], confidence,
+								offset + ordinal);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Score the prepared candidates in one pass per least date of birth
+	 * outcome, smallest first, so the bound drops early. Candidates come out
+	 * of their order, so each is scored against the bound for its own
+	 * ordinal.
+	 * 
+	 * @param deadline
+	 *            {@link System#nanoTime()} to stop at, checked before each
+	 *            block
+	 * @param stop
+	 *            stops the scan once done, if not null
+	 * @return true if every candidate was scored
+	 */
+	private boolean scanMostLikelyFirst(PreparedPerson person,
+			PreparedCandidates candidates, BestMatches best, long deadline,
+			Future<?> stop) {
+		int gender = candidates.genderCode(person.gender);
+		int[] rules = new int[BLOCK];
+		int size = candidates.size();
+		for (int tier : dateTiers) {
+			for (int start = 0; start < size; start += BLOCK) {
+				if (deadline - System.nanoTime() <= 0
+						|| (stop != null && stop.isDone())) {
+					return false;
+				}
+				int end = Math.min(size, start + BLOCK);
+				dateRules(person, candidates, gender, start, end, rules);
+
+				for (int ordinal = start; ordinal < end; ordinal++) {
+					int candidateRules = rules[ordinal - start];
+					if (dateMinimum[candidateRules] != tier) {
+						continue;
+					}
+					int bound = best.bound(ordinal);
+					if (tier > bound - stageMinimum) {
+						reject(person);
+						continue;
+					}
+					int confidence = confidenceAt(person, candidates,
+							ordinal, candidateRules, bound);
+					if (confidence > -1) {
+						best.offer(candidates.persons[ordinal], confidence,
+								ordinal);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The date of birth and gender rules of the candidates from start to
+	 * end, one column at a time.
+	 */
+	private static void dateRules(PreparedPerson person,
+			PreparedCandidates candidates, int gender, int start, int end,
+			int[] rules) {
+		byte[] genders = candidates.genders;
+		int[] epochDays = candidates.epochDays;
+		int[] years = candidates.years;
+		int[] months = candidates.months;
+		int[] days = candidates.days;
+		int[] reversedDays = candidates.reversedDays;
+		int epochDay = person.epochDay;
+		int year = person.year;
+		int month = person.month;
+		int day = person.day;
+		for (int i = start; i < end; i++) {
+			rules[i - start] = equal(genders[i], gender)
+					| equal(epochDays[i], epochDay) << 1
+					| equal(years[i], year) << 2
+					| equal(months[i], month) << 3
+					| equal(days[i], day) << 4
+					| equal(reversedDays[i], day) << 5;
+		}
+	}
+
+	/**
+	 * @return 1 if equal, else 0, without a branch
+	 */
+	private static int equal(int a, int b) {
+		int difference = a ^ b;
+		return ((difference | -difference) >>> 31) ^ 1;
+	}
+
+	/**
+	 * Score a candidate read through its getters.
+	 * 
+	 * @see #confidence(PreparedPerson, PersonNameMatcher, String, String[],
+	 *      String, long, long[], long, int, int)
+	 */
+	private int confidence(PreparedPerson person, PersonNameMatcher candidate,
+			int bound) {
+		Calendar personDOB = person.dateOfBirth;
+		Calendar candidateDOB = candidate.getDateOfBirth();
+		int candidateDay = candidateDOB.get(Calendar.DATE);
+
+		int rules = 0;
+		if (StringUtils.equals(candidate.getGender(), person.gender)) {
+			rules |= GENDER_EQUALS;
+		}
+		if (DateUtils.truncatedEquals(candidateDOB, personDOB, Calendar.DATE)) {
+			rules |= DOB_EQUALS;
+		}
+		if (DateUtils.truncatedEquals(candidateDOB, personDOB, Calendar.YEAR)) {
+			rules |= YEAR_EQUALS;
+		}
+		if (candidateDOB.get(Calendar.MONTH) == person.month) {
+			rules |= MONTH_EQUALS;
+		}
+		if (candidateDay == person.day) {
+			rules |= DAY_EQUALS;
+		}
+		if (PreparedCandidates.reverseDay(candidateDay) == person.day) {
+			rules |= DAY_TRANSPOSED;
+		}
+
+		return confidence(person, candidate, candidate.getLastName(), null,
+				candidate.getFirstName(), LevenshteinPattern.NO_GRAMS, null,
+				LevenshteinPattern.NO_GRAMS, rules, bound);
+	}
+
+	/**
+	 * Score a prepared candidate.
+	 * 
+	 * @see #confidence(PreparedPerson, PersonNameMatcher, String, String[],
+	 *      String, long, long[], long, int, int)
+	 */
+	private int confidence(PreparedPerson person,
+			PreparedCandidates candidates, int ordinal, byte gender, int bound) {
+		int rules = 0;
+		if (candidates.genders[ordinal] == gender) {
+			rules |= GENDER_EQUALS;
+		}
+		if (candidates.epochDays[ordinal] == person.epochDay) {
+			rules |= DOB_EQUALS;
+		}
+		if (candidates.years[ordinal] == person.year) {
+			rules |= YEAR_EQUALS;
+		}
+		if (candidates.months[ordinal] == person.month) {
+			rules |= MONTH_EQUALS;
+		}
+		if (candidates.days[ordinal] == person.day) {
+			rules |= DAY_EQUALS;
+		}
+		if (candidates.reversedDays[ordinal] == person.day) {
+			rules |= DAY_TRANSPOSED;
+		}
+
+		return confidenceAt(person, candidates, ordinal, rules, bound);
+	}
+
+	/**
+	 * Score a prepared candidate whose rules are worked out, its names
+	 * bounded by their grams before any distance is computed.
+	 * 
+	 * @see #confidence(PreparedPerson, PersonNameMatcher, String, String[],
+	 *      String, long, long[], long, int, int)
+	 */
+	private int confidenceAt(PreparedPerson person,
+			PreparedCandidates candidates, int ordinal, int rules, int bound) {
+		return confidence(person, candidates.persons[ordinal],
+				candidates.lastNames[ordinal],
+				candidates.lastNameParts[ordinal],
+				candidates.firstNames[ordinal],
+				candidates.lastNameGrams[ordinal],
+				candidates.lastNamePartGrams[ordinal],
+				candidates.firstNameGrams[ordinal], rules, bound);
+	}
+
+	/**
+	 * Score a candidate mapped from a file. The flyweight is moved to the
+	 * candidate for the {@link ScoringStage}s.
+	 * 
+	 * @see #confidence(PreparedPerson, PersonNameMatcher, String, String[],
+	 *      String, long, long[], long, int, int)
+	 */
+	private int confidence(PreparedPerson person,
+			MappedCandidates candidates, int ordinal, byte gender,
+			MappedCandidates.Candidate flyweight, int bound) {
+		int day = candidates.day(ordinal);
+		int rules = 0;
+		if (candidates.gender(ordinal) == gender) {
+			rules |= GENDER_EQUALS;
+		}
+		if (candidates.epochDay(ordinal) == person.epochDay) {
+			rules |= DOB_EQUALS;
+		}
+		if (candidates.year(ordinal) == person.year) {
+			rules |= YEAR_EQUALS;
+		}
+		if (candidates.month(ordinal) == person.month) {
+			rules |= MONTH_EQUALS;
+		}
+		if (day == person.day) {
+			rules |= DAY_EQUALS;
+		}
+		if (PreparedCandidates.reverseDay(day) == person.day) {
+			rules |= DAY_TRANSPOSED;
+		}
+
+		return confidence(person, flyweight.moveTo(ordinal),
+				candidates.lastName(ordinal),
+				candidates.lastNameParts(ordinal),
+				candidates.firstName(ordinal), LevenshteinPattern.NO_GRAMS,
+				null, LevenshteinPattern.NO_GRAMS, rules, bound);
+	}
+
+	/**
+	 * Score the candidate against the person. The date of birth and gender
+	 * rules are checked first so the edit distances can be bounded by what is
+	 * left of the bound once the cheapest possible outcome of those rules is
+	 * paid for. The name distances and the {@link ScoringStage}s then run
+	 * cheapest first, each bounded by what is left. As soon as the confidence
+	 * can no longer get to the bound the candidate is rejected.
+	 * 
+	 * @param person
+	 *            - the person to match.
+	 * @param candidate
+	 *            - {@link PersonNameMatcher} the candidate to score
+	 * @param candidateLast
+	 *            - the candidate's last name
+	 * @param candidateParts
+	 *            - the candidate's hyphenated parts, null to split them when
+	 *            needed
+	 * @param candidateFirst
+	 *            - the candidate's first name
+	 * @param lastGrams
+	 *            - grams of the candidate's last name, or NO_GRAMS
+	 * @param partGrams
+	 *            - grams of the candidate's hyphenated parts, or null
+	 * @param firstGrams
+	 *            - grams of the candidate's first name, or NO_GRAMS
+	 * @param rules
+	 *            - the date of birth and gender rules the candidate passes
+	 * @param bound
+	 *            Highest confidence that is still of interest.
+	 * @return the confidence, or -1 if it is greater than the bound.
+	 */
+	private int confidence(PreparedPerson person, PersonNameMatcher candidate,
+			String candidateLast, String[] candidateParts,
+			String candidateFirst, long lastGrams, long[] partGrams,
+			long firstGrams, int rules, int bound) {
+		boolean genderEquals = (rules & GENDER_EQUALS) != 0;
+		boolean dobEquals = (rules & DOB_EQUALS) != 0;
+		boolean dobYearEquals = (rules & YEAR_EQUALS) != 0;
+		boolean monthEquals = (rules & MONTH_EQUALS) != 0;
+		boolean dayEquals = (rules & DAY_EQUALS) != 0;
+
+		// Least the date of birth rules and the stages can add to the name
+		// differences
+		int budget = bound - stageMinimum - dateMinimum[rules];
+		if (budget < 0) {
+			return reject(person);
+		}
+
+		// Cheapest stage first, each bounded by what the others left
+		int penalty = stageMinimum;
+		int score = score(stages[0], person, candidate, budget);
+		if (score < 0) {
+			return reject(person);
+		}
+		penalty += score;
+		budget -= score;
+
+		int confidence = distance(person, candidateFirst, firstGrams,
+				person.firstNamePattern, budget);
+		if (confidence < 0 || confidence > budget) {
+			return reject(person);
+		}
+		budget -= confidence;
+
+		score = score(stages[1], person, candidate, budget);
+		if (score < 0) {
+			return reject(person);
+		}
+		penalty += score;
+		budget -= score;
+
+		score = lastNameDifference(person, candidateLast, candidateParts,
+				lastGrams, partGrams, budget);
+		if (score < 0 || score > budget) {
+			return reject(person);
+		}
+		confidence += score;
+		budget -= score;
+
+		score = score(stages[2], person, candidate, budget);
+		if (score < 0) {
+			return reject(person);
+		}
+		penalty += score;
+
+		if (dobEquals && genderEquals) {
+			return exit(person, MatchRule.DOB_AND_GENDER, confidence
+					+ penalty, bound);
+		}
+		confidence = confidence + confidentIncrement;
+
+		// Year Difference
+		if (monthEquals && dayEquals && confidence < yearOfBirthThreshold) {
+			return exit(person, MatchRule.YEAR_OF_BIRTH, confidence
+					+ penalty, bound);
+		}
+		confidence = confidence + confidentIncrement;
+
+		// Month off or transposed days (e.g. 1/21/yyyy 1/12/yyyy)
+		if (dobYearEquals && confidence < dayOfBirthThreshold) {
+			if (dayEquals) {
+				return exit(person, MatchRule.MONTH_OF_BIRTH, confidence
+						+ penalty, bound);
+			}
+			confidence = confidence + confidentIncrement;
+
+			if ((rules & DAY_TRANSPOSED) != 0) {
+				confidence = confidence + confidentIncrement;
+				return exit(person, MatchRule.TRANSPOSED_DAY, confidence
+						+ penalty, bound);
+			}
+		}
+		confidence = confidence + confidentIncrement;
+
+		if (confidence < weakMatchThreshold && weakMatch(person, candidate)) {
+			confidence = confidence + confidentIncrement;
+			return exit(person, MatchRule.WEAK_MATCH, confidence + penalty,
+					bound);
+		}
+		confidence = confidence + confidentIncrement;
+
+		return exit(person, MatchRule.FALL_THROUGH, confidence + penalty,
+				bound);
+	}
+
+	/**
+	 * Run one slot of the config's stages on the candidate, each given what
+	 * is left of the budget.
+	 * 
+	 * @return what the stages add over their minimums, or -1 if one of them
+	 *         goes over the budget.
+	 */
+	private static int score(ScoringStage[] slot, PreparedPerson person,
+			PersonNameMatcher candidate, int budget) {
+		int used = 0;
+		for (ScoringStage stage : slot) {
+			int minimum = stage.getMinimum();
+			int score = stage.score(person.person, candidate, budget - used
+					+ minimum);
+			if (score >= 0 && score < minimum) {
+				throw new IllegalStateException("Stage " + stage + " scored "
+						+ score + " under its minimum " + minimum);
+			}
+			if (score < 0 || score - minimum > budget - used) {
+				return -1;
+			}
+			used += score - minimum;
+		}
+		return used;
+	}
+
+	private static boolean weakMatch(PreparedPerson person,
+			PersonNameMatcher candidate) {
+		if (candidate instanceof MappedCandidates.Candidate) {
+			// The file carries no weak match criteria
+			return false;
+		}
+		if (person.metrics != null) {
+			person.metrics.weakMatch();
+		}
+		return person.person.weakMatch(candidate);
+	}
+
+	/**
+	 * Smallest difference between the candidate's last name and the person's
+	 * last name, the alternate last name or any of their hyphenated parts.
+	 * 
+	 * @param threshold
+	 *            Largest difference that is still of interest.
+	 * @return the difference, or -1 if every difference is greater than the
+	 *         threshold.
+	 */
+	private int lastNameDifference(PreparedPerson person,
+			String candidateLast, String[] candidateParts, long lastGrams,
+			long[] partGrams, int threshold) {
+		int lastDiff = distance(person, candidateLast, lastGrams,
+				person.lastNamePattern, threshold);
+		if (lastDiff == 0) {
+			return 0;
+		}
+		if (lastDiff > -1) {
+			threshold = lastDiff - 1;
+		}
+		if (person.alternateLastName != null) {
+			int altDiff = distance(person, candidateLast, lastGrams,
+					person.alternateLastNamePattern, threshold);
+			if (altDiff > -1) {
+				if (altDiff == 0) {
+					return 0;
+				}
+				lastDiff = altDiff;
+				threshold = altDiff - 1;
+			}
+			int hyphenated = checkForHyphenated(person,
+					person.alternateLastName, person.alternateLastNameParts,
+					candidateLast, candidateParts, partGrams, threshold);
+			if (hyphenated > -1) {
+				if (hyphenated == 0) {
+					return 0;
+				}
+				lastDiff = hyphenated;
+				threshold = hyphenated - 1;
+			}
+		}
+		int hyphenated = checkForHyphenated(person, person.lastName,
+				person.lastNameParts, candidateLast, candidateParts,
+				partGrams, threshold);
+		if (hyphenated > -1) {
+			lastDiff = hyphenated;
+		}
+		return lastDiff;
+	}
+
+	/**
+	 * @param claimParts
+	 *            the person's last name parts
+	 * @param memberParts
+	 *            the candidate's last name parts, null to split them here
+	 * @param memberGrams
+	 *            grams of the candidate's last name parts, null if not known
+	 * @param threshold
+	 *            Largest difference that is still of interest.
+	 * @return the smallest difference between the hyphenated parts, or -1 if
+	 *         neither name is hyphenated or every difference is greater than
+	 *         the threshold.
+	 */
+	private int checkForHyphenated(PreparedPerson person, String personLast,
+			LevenshteinPattern[] claimParts, String candidateLast,
+			String[] memberParts, long[] memberGrams, int threshold) {
+
+		if (StringUtils.contains(personLast, "-")
+				|| StringUtils.contains(candidateLast, "-")
+				|| StringUtils.contains(personLast, " ")
+				|| StringUtils.contains(candidateLast, " ")) {
+			// Check for mixed up or missing hyphenated names
+
+			if (memberParts == null) {
+				memberParts = lastNameParts(candidateLast);
+			}
+
+			int lastNameConfidence = -1;
+			for (LevenshteinPattern claimPart : claimParts) {
+				for (int i = 0; i < memberParts.length; i++) {
+					int diff = distance(person, memberParts[i],
+							memberGrams == null ? LevenshteinPattern.NO_GRAMS
+									: memberGrams[i], claimPart, threshold);
+					if (diff > -1) {
+						if (diff == 0) {
+							return 0;
+						}
+						lastNameConfidence = diff;
+						threshold = diff - 1;
+					}
+				}
+			}
+			return lastNameConfidence;
+
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The parts a last name is compared on when looking for mixed up or
+	 * missing hyphenated names: split on '-' followed by split on ' '. A name
+	 * with neither has just the one part.
+	 * 
+	 * @param lastName
+	 * @return the parts
+	 */
+	static String[] lastNameParts(String lastName) {
+		String[] hyphenParts = StringUtils.split(lastName, '-');
+		String[] spaceParts = StringUtils.split(lastName, ' ');
+		if (Arrays.equals(hyphenParts, spaceParts)) {
+			return hyphenParts;
+		}
+		return ArrayUtils.addAll(hyphenParts, spaceParts);
 	}
 
 }
\ No newline at end of file
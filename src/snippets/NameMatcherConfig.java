@@ -0,0 +1,125 @@
+package snippets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thresholds, increment and extra {@link ScoringStage}s used by
+ * {@link NameMatcher}. Immutable, so one configuration can be shared by any
+ * number of threads.
+ * <ul>
+ * <li>yearOfBirthThreshold = 5
+ * <li>dayOfBirthThreshold = 5
+ * <li>weakMatchThreshold = 5
+ * <li>confidentIncrement = 2
+ * <li>stages = none
+ * </ul>
+ */
+public final class NameMatcherConfig {
+
+	/**
+	 * The defaults.
+	 */
+	public static final NameMatcherConfig DEFAULT = new NameMatcherConfig(
+			null, null, null, null);
+
+	private final int yearOfBirthThreshold;
+	private final int dayOfBirthThreshold;
+	private final int weakMatchThreshold;
+	private final int confidentIncrement;
+	private final List<ScoringStage> stages;
+
+	/**
+	 * Null, negative or zero values will use the defaults.
+	 *
+	 * @param yearOfBirthThreshold
+	 * @param dayOfBirthThreshold
+	 * @param weakMatchThreshold
+	 * @param confidentIncrement
+	 */
+	public NameMatcherConfig(Integer yearOfBirthThreshold,
+			Integer dayOfBirthThreshold, Integer weakMatchThreshold,
+			Integer confidentIncrement) {
+		this(yearOfBirthThreshold, dayOfBirthThreshold, weakMatchThreshold,
+				confidentIncrement, null);
+	}
+
+	/**
+	 * Null, negative or zero values will use the defaults.
+	 *
+	 * @param yearOfBirthThreshold
+	 * @param dayOfBirthThreshold
+	 * @param weakMatchThreshold
+	 * @param confidentIncrement
+	 * @param stages
+	 *            penalties added to every candidate's confidence, null for
+	 *            none
+	 */
+	public NameMatcherConfig(Integer yearOfBirthThreshold,
+			Integer dayOfBirthThreshold, Integer weakMatchThreshold,
+			Integer confidentIncrement, List<ScoringStage> stages) {
+		super();
+		this.yearOfBirthThreshold = orDefault(yearOfBirthThreshold, 5);
+		this.dayOfBirthThreshold = orDefault(dayOfBirthThreshold, 5);
+		this.weakMatchThreshold = orDefault(weakMatchThreshold, 5);
+		this.confidentIncrement = orDefault(confidentIncrement, 2);
+		if (stages == null) {
+			this.stages = Collections.emptyList();
+		} else {
+			for (ScoringStage stage : stages) {
+				if (stage.getMinimum() < 0) {
+					throw new IllegalArgumentException(
+							"A stage's minimum must not be negative");
+				}
+			}
+			this.stages = Collections
+					.unmodifiableList(new ArrayList<ScoringStage>(stages));
+		}
+	}
+
+	private static int orDefault(Integer value, int defaultValue) {
+		if (value != null && value > 0) {
+			return value;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * @return the confidence under which a match on month and day with a
+	 *         different year of birth is attempted
+	 */
+	public int getYearOfBirthThreshold() {
+		return yearOfBirthThreshold;
+	}
+
+	/**
+	 * @return the confidence under which a match on year with a different or
+	 *         transposed day of birth is attempted
+	 */
+	public int getDayOfBirthThreshold() {
+		return dayOfBirthThreshold;
+	}
+
+	/**
+	 * @return the confidence under which the user defined weak match is
+	 *         attempted
+	 */
+	public int getWeakMatchThreshold() {
+		return weakMatchThreshold;
+	}
+
+	/**
+	 * @return how much to increase the confidence by for each rule missed
+	 */
+	public int getConfidentIncrement() {
+		return confidentIncrement;
+	}
+
+	/**
+	 * @return the penalties added to every candidate's confidence
+	 */
+	public List<ScoringStage> getStages() {
+		return stages;
+	}
+}
@@ -0,0 +1,79 @@
+package snippets;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Puts names in the canonical form prepared source persons can keep them in:
+ * upper case, accents and other diacritics removed, punctuation other than
+ * hyphens dropped, and each run of spaces, or of hyphens with any spaces
+ * around them, made a single space or hyphen, e.g. " o'Brien --
+ * N&uacute;&ntilde;ez" becomes "OBRIEN-NUNEZ". <br>
+ * Letters with no decomposition are folded to their nearest Latin letters
+ * (e.g. &Oslash; to O, &AElig; to AE); other letters and digits are kept.
+ */
+public final class NameNormalizer {
+
+	private NameNormalizer() {
+	}
+
+	/**
+	 * @param name
+	 * @return the canonical form, or null if the name is null
+	 */
+	public static String normalize(String name) {
+		if (name == null) {
+			return null;
+		}
+		String upper = Normalizer.normalize(name, Normalizer.Form.NFD)
+				.toUpperCase(Locale.ROOT);
+		StringBuilder canonical = new StringBuilder(upper.length());
+
+		// The separator seen since the last letter, if any: '-' wins over ' '
+		char separator = 0;
+		for (int i = 0; i < upper.length(); i++) {
+			char c = upper.charAt(i);
+			if (c == '-') {
+				separator = '-';
+			} else if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+				if (separator == 0) {
+					separator = ' ';
+				}
+			} else if (Character.isLetterOrDigit(c)) {
+				if (separator != 0 && canonical.length() > 0) {
+					canonical.append(separator);
+				}
+				separator = 0;
+				fold(canonical, c);
+			}
+			// Diacritics and punctuation are dropped
+		}
+		return canonical.toString();
+	}
+
+	private static void fold(StringBuilder canonical, char c) {
+		switch (c) {
+		case '\u00D8': // O with stroke
+			canonical.append('O');
+			break;
+		case '\u00C6': // AE
+			canonical.append("AE");
+			break;
+		case '\u0152': // OE
+			canonical.append("OE");
+			break;
+		case '\u0141': // L with stroke
+			canonical.append('L');
+			break;
+		case '\u0110': // D with stroke
+		case '\u00D0': // Eth
+			canonical.append('D');
+			break;
+		case '\u00DE': // Thorn
+			canonical.append("TH");
+			break;
+		default:
+			canonical.append(c);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package snippets;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Indexes the source persons' first and last names in {@link BKTree}s so the
+ * candidates within the ceiling can be found without comparing against every
+ * source person. <br>
+ * The confidence of a candidate is at least its first name difference plus
+ * its last name difference, so any candidate that can get under the ceiling
+ * has a first name and a last name (or one of its hyphenated parts) within
+ * the ceiling of the person's first name and the person's last name, the
+ * alternate last name or one of their hyphenated parts. Unlike
+ * {@link PersonIndex} no match is lost: results are the same as
+ * {@link NameMatcher#fuzzyNameMatch(PersonNameMatcher, List, String, int, int)}
+ * . Small ceilings touch a small part of the trees; large ones approach a full
+ * scan.
+ */
+public class NameTreeIndex implements CandidateIndex {
+
+	private final PersonNameMatcher[] persons;
+	private final BKTree lastNames = new BKTree();
+	private final BKTree firstNames = new BKTree();
+
+	/**
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 */
+	public NameTreeIndex(List<PersonNameMatcher> sourcePersons) {
+		super();
+		this.persons = sourcePersons
+				.toArray(new PersonNameMatcher[sourcePersons.size()]);
+		for (int i = 0; i < persons.length; i++) {
+			String lastName = persons[i].getLastName();
+			if (lastName != null) {
+				lastNames.add(lastName, i);
+				for (String part : NameMatcher.lastNameParts(lastName)) {
+					lastNames.add(part, i);
+				}
+			}
+			String firstName = persons[i].getFirstName();
+			if (firstName != null) {
+				firstNames.add(firstName, i);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return persons.length;
+	}
+
+	@Override
+	public PersonNameMatcher getPerson(int ordinal) {
+		return persons[ordinal];
+	}
+
+	/**
+	 * Every source person whose first name and last name are both within the
+	 * ceiling.
+	 */
+	@Override
+	public int[] candidates(PersonNameMatcher person,
+			String alternateLastName, int ceiling) {
+		if (ceiling < 0) {
+			ceiling = 0;
+		}
+		String firstName = person.getFirstName();
+		String lastName = person.getLastName();
+		if (firstName == null || lastName == null) {
+			return new int[0];
+		}
+
+		OrdinalList first = new OrdinalList();
+		firstNames.search(firstName, ceiling, first);
+		if (first.isEmpty()) {
+			return new int[0];
+		}
+
+		OrdinalList last = new OrdinalList();
+		search(lastName, ceiling, last);
+		if (StringUtils.isNotEmpty(alternateLastName)) {
+			search(alternateLastName, ceiling, last);
+		}
+		return OrdinalList.intersect(first.toSortedArray(),
+				last.toSortedArray());
+	}
+
+	private void search(String lastName, int ceiling, OrdinalList found) {
+		lastNames.search(lastName, ceiling, found);
+		for (String part : NameMatcher.lastNameParts(lastName)) {
+			lastNames.search(part, ceiling, found);
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package snippets;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of candidate ordinals, laid out like a Roaring bitmap: the
+ * ordinals are split on their high 16 bits into containers of at most 65536,
+ * and each container keeps its low 16 bits as a sorted array while it holds
+ * no more than {@value #ARRAY_MAX} of them, or as a bitmap once it holds
+ * more. Sparse sets cost two bytes an ordinal and dense ones one bit, and
+ * intersections and unions work a container at a time, word by word where
+ * both sides are bitmaps. <br>
+ * Immutable, so it can be shared by any number of threads.
+ */
+final class OrdinalBitmap {
+
+	/**
+	 * Most low halves a container keeps as an array: past this the 8K
+	 * bitmap is smaller.
+	 */
+	static final int ARRAY_MAX = 4096;
+
+	private static final int WORDS = 1 << 16 >>> 6;
+
+	static final OrdinalBitmap EMPTY = new OrdinalBitmap(new char[0],
+			new Container[0]);
+
+	/**
+	 * The ordinals sharing one high half, as an array or a bitmap of their
+	 * low halves.
+	 */
+	private static final class Container {
+		final char[] array;
+		final long[] bitmap;
+		final int cardinality;
+
+		private Container(char[] array, int cardinality) {
+			this.array = array;
+			this.bitmap = null;
+			this.cardinality = cardinality;
+		}
+
+		private Container(long[] bitmap, int cardinality) {
+			this.array = null;
+			this.bitmap = bitmap;
+			this.cardinality = cardinality;
+		}
+
+		/**
+		 * @return an array container if there are few enough low halves
+		 */
+		static Container of(long[] bitmap, int cardinality) {
+			if (cardinality > ARRAY_MAX) {
+				return new Container(bitmap, cardinality);
+			}
+			char[] array = new char[cardinality];
+			int count = 0;
+			for (int word = 0; word < bitmap.length; word++) {
+				for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+					array[count++] = (char) (word << 6 | Long
+							.numberOfTrailingZeros(bits));
+				}
+			}
+			return new Container(array, cardinality);
+		}
+
+		/**
+		 * @return a bitmap container if there are too many low halves
+		 */
+		static Container of(char[] array, int cardinality) {
+			if (cardinality <= ARRAY_MAX) {
+				return new Container(array.length == cardinality ? array
+						: Arrays.copyOf(array, cardinality), cardinality);
+			}
+			long[] bitmap = new long[WORDS];
+			for (int i = 0; i < cardinality; i++) {
+				bitmap[array[i] >>> 6] |= 1L << array[i];
+			}
+			return new Container(bitmap, cardinality);
+		}
+
+		Container and(Container other) {
+			if (bitmap != null && other.bitmap != null) {
+				long[] both = new long[WORDS];
+				int cardinality = 0;
+				for (int word = 0; word < WORDS; word++) {
+					both[word] = bitmap[word] & other.bitmap[word];
+					cardinality += Long.bitCount(both[word]);
+				}
+				return cardinality == 0 ? null : of(both, cardinality);
+			}
+			if (bitmap != null) {
+				return other.and(this);
+			}
+			char[] both = new char[cardinality];
+			int count = 0;
+			if (other.bitmap != null) {
+				for (char low : array) {
+					if ((other.bitmap[low >>> 6] & 1L << low) != 0) {
+						both[count++] = low;
+					}
+				}
+			} else {
+				char[] a = array;
+				char[] b = other.array;
+				int i = 0;
+				int j = 0;
+				while (i < a.length && j < b.length) {
+					if (a[i] < b[j]) {
+						i++;
+					} else if (a[i] > b[j]) {
+						j++;
+					} else {
+						both[count++] = a[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			return count == 0 ? null : of(both, count);
+		}
+
+		Container or(Container other) {
+			if (bitmap == null && other.bitmap == null) {
+				char[] a = array;
+				char[] b = other.array;
+				char[] either = new char[a.length + b.length];
+				int count = 0;
+				int i = 0;
+				int j = 0;
+				while (i < a.length || j < b.length) {
+					if (j == b.length || (i < a.length && a[i] < b[j])) {
+						either[count++] = a[i++];
+					} else if (i == a.length || a[i] > b[j]) {
+						either[count++] = b[j++];
+					} else {
+						either[count++] = a[i];
+						i++;
+						j++;
+					}
+				}
+				return of(either, count);
+			}
+			long[] either = new long[WORDS];
+			if (bitmap != null) {
+				System.arraycopy(bitmap, 0, either, 0, WORDS);
+			} else {
+				setAll(either, array);
+			}
+			if (other.bitmap != null) {
+				for (int word = 0; word < WORDS; word++) {
+					either[word] |= other.bitmap[word];
+				}
+			} else {
+				setAll(either, other.array);
+			}
+			int cardinality = 0;
+			for (long bits : either) {
+				cardinality += Long.bitCount(bits);
+			}
+			return new Container(either, cardinality);
+		}
+
+		private static void setAll(long[] bitmap, char[] array) {
+			for (char low : array) {
+				bitmap[low >>> 6] |= 1L << low;
+			}
+		}
+
+		/**
+		 * Write the ordinals of the high half into to, from offset.
+		 */
+		void copyTo(int high, int[] to, int offset) {
+			int base = high << 16;
+			if (array != null) {
+				for (int i = 0; i < array.length; i++) {
+					to[offset + i] = base | array[i];
+				}
+				return;
+			}
+			for (int word = 0; word < WORDS; word++) {
+				for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+					to[offset++] = base | word << 6
+							| Long.numberOfTrailingZeros(bits);
+				}
+			}
+		}
+	}
+
+	/**
+	 * High halves, ascending, and their containers; no container is empty.
+	 */
+	private final char[] keys;
+	private final Container[] containers;
+	private final int cardinality;
+
+	private OrdinalBitmap(char[] keys, Container[] containers) {
+		this.keys = keys;
+		this.containers = containers;
+		int cardinality = 0;
+		for (Container container : containers) {
+			cardinality += container.cardinality;
+		}
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * @param ordinals
+	 *            ascending, each once, none negative
+	 * @param count
+	 *            how many of them to keep
+	 * @return the set of the first count ordinals
+	 */
+	static OrdinalBitmap of(int[] ordinals, int count) {
+		char[] keys = new char[count == 0 ? 0 : (ordinals[count - 1] >>> 16)
+				- (ordinals[0] >>> 16) + 1];
+		Container[] containers = new Container[keys.length];
+		int size = 0;
+		for (int start = 0; start < count;) {
+			int high = ordinals[start] >>> 16;
+			int end = start;
+			while (end < count && ordinals[end] >>> 16 == high) {
+				end++;
+			}
+			char[] lows = new char[end - start];
+			for (int i = start; i < end; i++) {
+				lows[i - start] = (char) ordinals[i];
+			}
+			keys[size] = (char) high;
+			containers[size++] = Container.of(lows, lows.length);
+			start = end;
+		}
+		return new OrdinalBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(
+				containers, size));
+	}
+
+	/**
+	 * @return the number of ordinals in the set
+	 */
+	int cardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * @return the ordinals in both sets
+	 */
+	OrdinalBitmap and(OrdinalBitmap other) {
+		int capacity = Math.min(keys.length, other.keys.length);
+		char[] bothKeys = new char[capacity];
+		Container[] both = new Container[capacity];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < keys.length && j < other.keys.length) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container container = containers[i].and(other.containers[j]);
+				if (container != null) {
+					bothKeys[size] = keys[i];
+					both[size++] = container;
+				}
+				i++;
+				j++;
+			}
+		}
+		return new OrdinalBitmap(Arrays.copyOf(bothKeys, size),
+				Arrays.copyOf(both, size));
+	}
+
+	/**
+	 * @return the ordinals in either set
+	 */
+	OrdinalBitmap or(OrdinalBitmap other) {
+		if (other.cardinality == 0) {
+			return this;
+		}
+		if (cardinality == 0) {
+			return other;
+		}
+		int capacity = keys.length + other.keys.length;
+		char[] eitherKeys = new char[capacity];
+		Container[] either = new Container[capacity];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < keys.length || j < other.keys.length) {
+			if (j == other.keys.length
+					|| (i < keys.length && keys[i] < other.keys[j])) {
+				eitherKeys[size] = keys[i];
+				either[size++] = containers[i++];
+			} else if (i == keys.length || keys[i] > other.keys[j]) {
+				eitherKeys[size] = other.keys[j];
+				either[size++] = other.containers[j++];
+			} else {
+				eitherKeys[size] = keys[i];
+				either[size++] = containers[i++].or(other.containers[j++]);
+			}
+		}
+		return new OrdinalBitmap(Arrays.copyOf(eitherKeys, size),
+				Arrays.copyOf(either, size));
+	}
+
+	/**
+	 * @return the ordinals in the set, ascending
+	 */
+	int[] toArray() {
+		int[] ordinals = new int[cardinality];
+		int offset = 0;
+		for (int i = 0; i < keys.length; i++) {
+			containers[i].copyTo(keys[i], ordinals, offset);
+			offset += containers[i].cardinality;
+		}
+		return ordinals;
+	}
+}
@@ -0,0 +1,81 @@
+package snippets;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of candidate ordinals, for collecting a person's candidates
+ * without anything sized to the whole source.
+ */
+final class OrdinalList {
+
+	private int[] ordinals = new int[16];
+	private int size;
+
+	void add(int ordinal) {
+		if (size == ordinals.length) {
+			ordinals = Arrays.copyOf(ordinals, size * 2);
+		}
+		ordinals[size++] = ordinal;
+	}
+
+	void addAll(int[] more, int count) {
+		if (size + count > ordinals.length) {
+			ordinals = Arrays.copyOf(ordinals,
+					Math.max(size + count, size * 2));
+		}
+		System.arraycopy(more, 0, ordinals, size, count);
+		size += count;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int get(int index) {
+		return ordinals[index];
+	}
+
+	/**
+	 * @return the ordinals in ascending order, each once
+	 */
+	int[] toSortedArray() {
+		Arrays.sort(ordinals, 0, size);
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct == 0 || ordinals[i] != ordinals[distinct - 1]) {
+				ordinals[distinct++] = ordinals[i];
+			}
+		}
+		return Arrays.copyOf(ordinals, distinct);
+	}
+
+	/**
+	 * @param a
+	 *            ascending
+	 * @param b
+	 *            ascending
+	 * @return the ordinals in both, ascending
+	 */
+	static int[] intersect(int[] a, int[] b) {
+		int[] both = new int[Math.min(a.length, b.length)];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				both[count++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(both, count);
+	}
+}
@@ -4,6 +4,7 @@ public class PersonConfidence implements Comparable<PersonConfidence> {
 
 	private PersonNameMatcher person;
 	private Integer confidence;
+	private int ordinal;
 
 	public PersonConfidence(PersonNameMatcher member, Integer confidence) {
 		super();
@@ -11,6 +12,19 @@ public class PersonConfidence implements Comparable<PersonConfidence> {
 		this.setConfidence(confidence);
 	}
 
+	/**
+	 * @param member
+	 * @param confidence
+	 * @param ordinal
+	 *            position of the member in the source persons, used to keep
+	 *            the source order between equal confidences.
+	 */
+	public PersonConfidence(PersonNameMatcher member, Integer confidence,
+			int ordinal) {
+		this(member, confidence);
+		this.setOrdinal(ordinal);
+	}
+
 	public PersonNameMatcher getPerson() {
 		return person;
 	}
@@ -27,6 +41,14 @@ public class PersonConfidence implements Comparable<PersonConfidence> {
 		this.confidence = confidence;
 	}
 
+	public int getOrdinal() {
+		return ordinal;
+	}
+
+	public void setOrdinal(int ordinal) {
+		this.ordinal = ordinal;
+	}
+
 	@Override
 	public int compareTo(PersonConfidence o) {
 		if (o != null && confidence != null && o.getConfidence() != null) {
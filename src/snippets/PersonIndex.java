@@ -0,0 +1,114 @@
+package snippets;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups the source persons into blocks by {@link BlockingKey} so a person is
+ * only scored against the candidates that share a block with it, instead of
+ * every source person. Build it once and reuse it for every person matched
+ * against the same source persons. <br>
+ * <b>Important</b> <br>
+ * This depends on org.apache.commons.codec.language.Soundex and
+ * org.apache.commons.codec.language.Metaphone <br>
+ * Blocking trades recall for speed: a candidate that shares no block with the
+ * person is never found, however low its confidence would be. Building the
+ * index with no keys scores every source person, the same as
+ * {@link NameMatcher#fuzzyNameMatch(PersonNameMatcher, List, String, int, int)}
+ * .
+ */
+public class PersonIndex implements CandidateIndex {
+
+	private final PersonNameMatcher[] persons;
+	private final BlockingKeys keys;
+	private final Map<String, int[]> blocks;
+
+	/**
+	 * Index on every {@link BlockingKey}.
+	 *
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 */
+	public PersonIndex(List<PersonNameMatcher> sourcePersons) {
+		this(sourcePersons, EnumSet.allOf(BlockingKey.class));
+	}
+
+	/**
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 * @param keys
+	 *            the {@link BlockingKey}s to block on. Empty scores every
+	 *            source person.
+	 */
+	public PersonIndex(List<PersonNameMatcher> sourcePersons,
+			Set<BlockingKey> keys) {
+		super();
+		this.persons = sourcePersons
+				.toArray(new PersonNameMatcher[sourcePersons.size()]);
+		this.keys = new BlockingKeys(keys);
+
+		Map<String, List<Integer>> building = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < persons.length; i++) {
+			PersonNameMatcher person = persons[i];
+			for (String key : this.keys.blocks(person.getLastName(),
+					person.getFirstName(), person.getDateOfBirth(), null)) {
+				List<Integer> block = building.get(key);
+				if (block == null) {
+					block = new ArrayList<Integer>(1);
+					building.put(key, block);
+				}
+				block.add(i);
+			}
+		}
+		this.blocks = new HashMap<String, int[]>(building.size() * 4 / 3 + 1);
+		for (Map.Entry<String, List<Integer>> entry : building.entrySet()) {
+			List<Integer> block = entry.getValue();
+			int[] ordinals = new int[block.size()];
+			for (int i = 0; i < ordinals.length; i++) {
+				ordinals[i] = block.get(i);
+			}
+			blocks.put(entry.getKey(), ordinals);
+		}
+	}
+
+	@Override
+	public int size() {
+		return persons.length;
+	}
+
+	@Override
+	public PersonNameMatcher getPerson(int ordinal) {
+		return persons[ordinal];
+	}
+
+	/**
+	 * Every source person that shares a block with the person or the
+	 * alternate last name. The ceiling is not used: blocks are not ranked.
+	 */
+	@Override
+	public int[] candidates(PersonNameMatcher person,
+			String alternateLastName, int ceiling) {
+		if (keys.isEmpty()) {
+			int[] all = new int[persons.length];
+			for (int i = 0; i < all.length; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+
+		OrdinalList found = new OrdinalList();
+		for (String key : keys.blocks(person.getLastName(),
+				person.getFirstName(), person.getDateOfBirth(),
+				alternateLastName)) {
+			int[] block = blocks.get(key);
+			if (block != null) {
+				found.addAll(block, block.length);
+			}
+		}
+		return found.toSortedArray();
+	}
+}
@@ -0,0 +1,268 @@
+package snippets;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The source persons laid out for {@link NameMatcher}: one array per field,
+ * read once from the {@link PersonNameMatcher} getters when built. Dates of
+ * birth are kept as primitive year, month, day and epoch day, gender as a
+ * byte code, last names with their hyphenated parts already split and the
+ * day of birth already reversed for the transposed day check, and the grams
+ * that bound each name's edit distances from below (see
+ * {@link LevenshteinPattern}) worked out. Build it once
+ * and reuse it for every person matched against the same source persons, or
+ * keep changing source persons in a {@link LiveCandidates}. <br>
+ * Names can be kept in the canonical form of {@link NameNormalizer}; a
+ * person matched against them is then put in the same form once per match,
+ * so case, accents and punctuation add nothing to the distances. <br>
+ * Dates are compared on their year, month and day fields as each Calendar
+ * reports them, which only differs from comparing truncated Calendars when
+ * the person and candidate are in different time zones. <br>
+ * Immutable once built, so it can be shared by any number of threads.
+ */
+public class PreparedCandidates {
+
+	final PersonNameMatcher[] persons;
+	final String[] lastNames;
+	final String[][] lastNameParts;
+	final String[] firstNames;
+	final long[] lastNameGrams;
+	final long[][] lastNamePartGrams;
+	final long[] firstNameGrams;
+	final byte[] genders;
+	final int[] epochDays;
+	final int[] years;
+	final int[] months;
+	final int[] days;
+	final int[] reversedDays;
+	final boolean normalized;
+
+	private final Map<String, Byte> genderCodes = new HashMap<String, Byte>();
+
+	/**
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 */
+	public PreparedCandidates(List<PersonNameMatcher> sourcePersons) {
+		this(sourcePersons, false);
+	}
+
+	/**
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 * @param normalizeNames
+	 *            keep the names in the form of {@link NameNormalizer}
+	 */
+	public PreparedCandidates(List<PersonNameMatcher> sourcePersons,
+			boolean normalizeNames) {
+		this(sourcePersons.size(), normalizeNames);
+		for (int i = 0; i < persons.length; i++) {
+			set(i, sourcePersons.get(i));
+		}
+	}
+
+	private PreparedCandidates(int size, boolean normalized) {
+		super();
+		this.normalized = normalized;
+		this.persons = new PersonNameMatcher[size];
+		this.lastNames = new String[size];
+		this.lastNameParts = new String[size][];
+		this.firstNames = new String[size];
+		this.lastNameGrams = new long[size];
+		this.lastNamePartGrams = new long[size][];
+		this.firstNameGrams = new long[size];
+		this.genders = new byte[size];
+		this.epochDays = new int[size];
+		this.years = new int[size];
+		this.months = new int[size];
+		this.days = new int[size];
+		this.reversedDays = new int[size];
+	}
+
+	/**
+	 * Copy of the first size persons of another, or all of them and room for
+	 * more.
+	 */
+	private PreparedCandidates(PreparedCandidates from, int size) {
+		super();
+		this.persons = Arrays.copyOf(from.persons, size);
+		this.lastNames = Arrays.copyOf(from.lastNames, size);
+		this.lastNameParts = Arrays.copyOf(from.lastNameParts, size);
+		this.firstNames = Arrays.copyOf(from.firstNames, size);
+		this.lastNameGrams = Arrays.copyOf(from.lastNameGrams, size);
+		this.lastNamePartGrams = Arrays.copyOf(from.lastNamePartGrams, size);
+		this.firstNameGrams = Arrays.copyOf(from.firstNameGrams, size);
+		this.genders = Arrays.copyOf(from.genders, size);
+		this.epochDays = Arrays.copyOf(from.epochDays, size);
+		this.years = Arrays.copyOf(from.years, size);
+		this.months = Arrays.copyOf(from.months, size);
+		this.days = Arrays.copyOf(from.days, size);
+		this.reversedDays = Arrays.copyOf(from.reversedDays, size);
+		this.normalized = from.normalized;
+		this.genderCodes.putAll(from.genderCodes);
+	}
+
+	private void set(int i, PersonNameMatcher person) {
+		Calendar dob = person.getDateOfBirth();
+		if (dob == null) {
+			throw new IllegalArgumentException(
+					"The date of birth must not be null");
+		}
+		persons[i] = person;
+		lastNames[i] = normalize(person.getLastName());
+		lastNameParts[i] = NameMatcher.lastNameParts(lastNames[i]);
+		firstNames[i] = normalize(person.getFirstName());
+		lastNameGrams[i] = LevenshteinPattern.grams(lastNames[i]);
+		lastNamePartGrams[i] = grams(lastNameParts[i]);
+		firstNameGrams[i] = LevenshteinPattern.grams(firstNames[i]);
+		genders[i] = addGender(person.getGender());
+		years[i] = dob.get(Calendar.YEAR);
+		months[i] = dob.get(Calendar.MONTH);
+		days[i] = dob.get(Calendar.DATE);
+		epochDays[i] = epochDay(years[i], months[i], days[i]);
+		reversedDays[i] = reverseDay(days[i]);
+	}
+
+	private static long[] grams(String[] names) {
+		if (names == null) {
+			return null;
+		}
+		long[] grams = new long[names.length];
+		for (int i = 0; i < names.length; i++) {
+			grams[i] = LevenshteinPattern.grams(names[i]);
+		}
+		return grams;
+	}
+
+	/**
+	 * @param name
+	 * @return the name as it is kept
+	 */
+	String normalize(String name) {
+		return normalized ? NameNormalizer.normalize(name) : name;
+	}
+
+	/**
+	 * @param ordinal
+	 *            position to replace, or the size to add at the end
+	 * @param person
+	 * @return a copy with the person at the position
+	 */
+	PreparedCandidates with(int ordinal, PersonNameMatcher person) {
+		PreparedCandidates copy = new PreparedCandidates(this, Math.max(
+				persons.length, ordinal + 1));
+		copy.set(ordinal, person);
+		return copy;
+	}
+
+	/**
+	 * @param ordinal
+	 *            position to remove
+	 * @return a copy without the person at the position, the last person
+	 *         moved into its place
+	 */
+	PreparedCandidates without(int ordinal) {
+		int last = persons.length - 1;
+		PreparedCandidates copy = new PreparedCandidates(this, last);
+		if (ordinal < last) {
+			copy.persons[ordinal] = persons[last];
+			copy.lastNames[ordinal] = lastNames[last];
+			copy.lastNameParts[ordinal] = lastNameParts[last];
+			copy.firstNames[ordinal] = firstNames[last];
+			copy.lastNameGrams[ordinal] = lastNameGrams[last];
+			copy.lastNamePartGrams[ordinal] = lastNamePartGrams[last];
+			copy.firstNameGrams[ordinal] = firstNameGrams[last];
+			copy.genders[ordinal] = genders[last];
+			copy.epochDays[ordinal] = epochDays[last];
+			copy.years[ordinal] = years[last];
+			copy.months[ordinal] = months[last];
+			copy.days[ordinal] = days[last];
+			copy.reversedDays[ordinal] = reversedDays[last];
+		}
+		return copy;
+	}
+
+	/**
+	 * @return the number of source persons
+	 */
+	public int size() {
+		return persons.length;
+	}
+
+	/**
+	 * @return true if the names are kept in the form of
+	 *         {@link NameNormalizer}
+	 */
+	public boolean isNormalized() {
+		return normalized;
+	}
+
+	/**
+	 * @param ordinal
+	 *            position in the source persons
+	 * @return the source person at that position
+	 */
+	public PersonNameMatcher getPerson(int ordinal) {
+		return persons[ordinal];
+	}
+
+	/**
+	 * @param gender
+	 * @return the code candidates with an equal gender carry, or -1 if no
+	 *         candidate has it
+	 */
+	byte genderCode(String gender) {
+		Byte code = genderCodes.get(gender);
+		return code == null ? -1 : code;
+	}
+
+	private byte addGender(String gender) {
+		Byte code = genderCodes.get(gender);
+		if (code == null) {
+			if (genderCodes.size() > Byte.MAX_VALUE) {
+				throw new IllegalArgumentException("More than "
+						+ (Byte.MAX_VALUE + 1) + " distinct genders");
+			}
+			code = (byte) genderCodes.size();
+			genderCodes.put(gender, code);
+		}
+		return code;
+	}
+
+	/**
+	 * The day written as two digits backwards (e.g. 12 is 21, 3 is 30).
+	 *
+	 * @param day
+	 *            day of the month
+	 * @return the reversed day
+	 */
+	static int reverseDay(int day) {
+		return day % 10 * 10 + day / 10;
+	}
+
+	/**
+	 * Days since 1970-01-01 in the proleptic Gregorian calendar.
+	 *
+	 * @param year
+	 * @param month
+	 *            0 based, as {@link Calendar#MONTH}
+	 * @param day
+	 *            day of the month
+	 * @return the epoch day
+	 */
+	static int epochDay(int year, int month, int day) {
+		// Count years from March so the leap day is the last of the year
+		int m = month + 1;
+		int y = m <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+}
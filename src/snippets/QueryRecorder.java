@@ -0,0 +1,216 @@
+package snippets;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.text.Normalizer;
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * {@link MatchRecorder} that writes what every match was asked to a compact
+ * log, for {@link RecordedQuery#read} to replay later: when it arrived, how
+ * long it took, the person's names, gender and date of birth, the alternate
+ * last name, ceiling, maximum returns and number of source persons. Numbers
+ * are written as variable length integers, so a query takes around 20 bytes
+ * plus its names. The searches for pairs of fuzzyNameClusters aren't
+ * queries anyone asked, so they aren't written. <br>
+ * Pseudonymized, the letters of every name are swapped through a shuffled
+ * alphabet and every year of birth moved by the same few years, both chosen
+ * at random when the recorder is made and never written. Accents are taken
+ * off first, and letters with no A to Z form are dropped, so no letter is
+ * written as it was. Names keep their hyphens and spaces and about the same
+ * lengths and distances to each other, and dates keep their months, days
+ * and distances, so a source built from the recorded names costs a match
+ * about what the real one did. <br>
+ * This is not anonymous: genders, months and days of birth are written as
+ * they were and years moved by at most five, and the letter frequencies of
+ * enough names give the alphabet away, so keep the log as safe as the names
+ * it came from. Weak match values can't be recorded. <br>
+ * Thread safe: each match is written under one short lock. A failed write is
+ * kept and thrown by {@link #close()}; later matches aren't written.
+ */
+public class QueryRecorder implements MatchRecorder, Closeable {
+
+	/**
+	 * "NMQL", then a version byte.
+	 */
+	static final int MAGIC = 0x4E4D514C;
+	static final int VERSION = 1;
+
+	static final int ALTERNATE_LAST_NAME = 1;
+	static final int NO_GENDER = 1 << 1;
+	static final int NO_LAST_NAME = 1 << 2;
+	static final int NO_FIRST_NAME = 1 << 3;
+
+	private final DataOutputStream out;
+	private final long start = System.nanoTime();
+	private final boolean pseudonymize;
+	private final char[] letters;
+	private final int yearShift;
+	private IOException failure;
+
+	/**
+	 * Pseudonymized.
+	 *
+	 * @param out
+	 *            where to write the log; closed by {@link #close()}
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public QueryRecorder(OutputStream out) throws IOException {
+		this(out, true);
+	}
+
+	/**
+	 * @param out
+	 *            where to write the log; closed by {@link #close()}
+	 * @param pseudonymize
+	 *            swap the letters of names and move years of birth
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public QueryRecorder(OutputStream out, boolean pseudonymize)
+			throws IOException {
+		super();
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+		this.pseudonymize = pseudonymize;
+		this.letters = new char[26];
+		for (int i = 0; i < letters.length; i++) {
+			letters[i] = (char) ('A' + i);
+		}
+		if (pseudonymize) {
+			Random random = new SecureRandom();
+			for (int i = letters.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				char swap = letters[i];
+				letters[i] = letters[j];
+				letters[j] = swap;
+			}
+			this.yearShift = random.nextInt(11) - 5;
+		} else {
+			this.yearShift = 0;
+		}
+	}
+
+	@Override
+	public synchronized void record(MatchMetrics metrics) {
+		if (failure != null || metrics.getMaxReturns() < 1) {
+			return;
+		}
+		PersonNameMatcher person = metrics.getPerson();
+		String gender = person.getGender();
+		String lastName = person.getLastName();
+		String firstName = person.getFirstName();
+		String alternateLastName = metrics.getAlternateLastName();
+		Calendar dob = person.getDateOfBirth();
+		long arrival = System.nanoTime() - metrics.getNanos() - start;
+		try {
+			writeVarLong(out, Math.max(arrival, 0) / 1000);
+			writeVarLong(out, metrics.getNanos());
+			writeVarLong(out, metrics.getCeiling());
+			writeVarLong(out, metrics.getMaxReturns());
+			writeVarLong(out, metrics.getSourceSize() + 1L);
+			out.writeByte((alternateLastName == null ? 0
+					: ALTERNATE_LAST_NAME)
+					| (gender == null ? NO_GENDER : 0)
+					| (lastName == null ? NO_LAST_NAME : 0)
+					| (firstName == null ? NO_FIRST_NAME : 0));
+			if (gender != null) {
+				out.writeUTF(gender);
+			}
+			if (lastName != null) {
+				out.writeUTF(pseudonymize(lastName));
+			}
+			if (firstName != null) {
+				out.writeUTF(pseudonymize(firstName));
+			}
+			if (alternateLastName != null) {
+				out.writeUTF(pseudonymize(alternateLastName));
+			}
+			writeVarLong(out, dob.get(Calendar.YEAR) + yearShift);
+			out.writeByte(dob.get(Calendar.MONTH));
+			out.writeByte(dob.get(Calendar.DATE));
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Letters swapped through the shuffled alphabet, keeping their case,
+	 * once their accents are taken off; other letters and the accents
+	 * dropped; anything else kept.
+	 */
+	private String pseudonymize(String name) {
+		if (!pseudonymize) {
+			return name;
+		}
+		String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+		StringBuilder pseudonym = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length();) {
+			int c = decomposed.codePointAt(i);
+			i += Character.charCount(c);
+			if (c >= 'A' && c <= 'Z') {
+				pseudonym.append(letters[c - 'A']);
+			} else if (c >= 'a' && c <= 'z') {
+				pseudonym.append(Character.toLowerCase(letters[c - 'a']));
+			} else if (c < 128 || !isLetterOrMark(c)) {
+				pseudonym.appendCodePoint(c);
+			}
+		}
+		return pseudonym.toString();
+	}
+
+	private static boolean isLetterOrMark(int c) {
+		switch (Character.getType(c)) {
+		case Character.NON_SPACING_MARK:
+		case Character.COMBINING_SPACING_MARK:
+		case Character.ENCLOSING_MARK:
+			return true;
+		default:
+			return Character.isLetter(c);
+		}
+	}
+
+	/**
+	 * Write what has been recorded so far.
+	 *
+	 * @throws IOException
+	 *             if any write failed
+	 */
+	public synchronized void flush() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Seven bits a byte, low first, the top bit set on every byte but the
+	 * last. Negative values take ten bytes.
+	 */
+	static void writeVarLong(DataOutputStream out, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+}
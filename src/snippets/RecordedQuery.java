@@ -0,0 +1,177 @@
+package snippets;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One fuzzyNameMatch call, as written by {@link QueryRecorder} or made up
+ * for a load test: what was asked, when, and how long it took. The person is
+ * a {@link CsvPerson} whose id is its position in the log. <br>
+ * Immutable.
+ */
+public final class RecordedQuery {
+
+	private final long arrivalNanos;
+	private final long nanos;
+	private final CsvPerson person;
+	private final int ceiling;
+	private final int maxReturns;
+	private final int sourceSize;
+
+	/**
+	 * @param arrivalNanos
+	 *            when the call was made, from the start of the log
+	 * @param nanos
+	 *            how long it took, 0 if not known
+	 * @param person
+	 *            the person matched, with the alternate last name
+	 * @param ceiling
+	 * @param maxReturns
+	 * @param sourceSize
+	 *            number of source persons matched against, -1 if not known
+	 */
+	public RecordedQuery(long arrivalNanos, long nanos, CsvPerson person,
+			int ceiling, int maxReturns, int sourceSize) {
+		super();
+		this.arrivalNanos = arrivalNanos;
+		this.nanos = nanos;
+		this.person = person;
+		this.ceiling = ceiling;
+		this.maxReturns = maxReturns;
+		this.sourceSize = sourceSize;
+	}
+
+	/**
+	 * @return when the call was made, from the start of the log
+	 */
+	public long getArrivalNanos() {
+		return arrivalNanos;
+	}
+
+	/**
+	 * @return how long the call took, 0 if not known
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the person matched
+	 */
+	public CsvPerson getPerson() {
+		return person;
+	}
+
+	/**
+	 * @return the alternate last name, or null if there was none
+	 */
+	public String getAlternateLastName() {
+		return person.getAlternateLastName();
+	}
+
+	/**
+	 * @return the ceiling
+	 */
+	public int getCeiling() {
+		return ceiling;
+	}
+
+	/**
+	 * @return the maximum number of matches asked for
+	 */
+	public int getMaxReturns() {
+		return maxReturns;
+	}
+
+	/**
+	 * @return the number of source persons matched against, -1 if not known
+	 */
+	public int getSourceSize() {
+		return sourceSize;
+	}
+
+	/**
+	 * Read a log written by {@link QueryRecorder}, in the order the calls
+	 * arrived. They are recorded in the order they finished in, so a slow
+	 * call comes after faster ones that arrived later; replayed in that
+	 * order it would be sent late.
+	 *
+	 * @param in
+	 *            the log; not closed
+	 * @return List<{@link RecordedQuery}> every call in the log
+	 * @throws IOException
+	 *             if reading fails or it isn't a log
+	 */
+	public static List<RecordedQuery> read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(
+				in));
+		if (data.readInt() != QueryRecorder.MAGIC) {
+			throw new IOException("Not a query log");
+		}
+		int version = data.readUnsignedByte();
+		if (version != QueryRecorder.VERSION) {
+			throw new IOException("Unknown query log version " + version);
+		}
+
+		List<RecordedQuery> queries = new ArrayList<RecordedQuery>();
+		while (true) {
+			long arrivalMicros;
+			try {
+				arrivalMicros = readVarLong(data);
+			} catch (EOFException e) {
+				Collections.sort(queries, new Comparator<RecordedQuery>() {
+					@Override
+					public int compare(RecordedQuery a, RecordedQuery b) {
+						return Long.compare(a.arrivalNanos, b.arrivalNanos);
+					}
+				});
+				return queries;
+			}
+			long nanos = readVarLong(data);
+			int ceiling = (int) readVarLong(data);
+			int maxReturns = (int) readVarLong(data);
+			int sourceSize = (int) (readVarLong(data) - 1);
+			int flags = data.readUnsignedByte();
+			String gender = (flags & QueryRecorder.NO_GENDER) != 0 ? null
+					: data.readUTF();
+			String lastName = (flags & QueryRecorder.NO_LAST_NAME) != 0 ? null
+					: data.readUTF();
+			String firstName = (flags & QueryRecorder.NO_FIRST_NAME) != 0 ? null
+					: data.readUTF();
+			String alternateLastName = null;
+			if ((flags & QueryRecorder.ALTERNATE_LAST_NAME) != 0) {
+				alternateLastName = data.readUTF();
+			}
+			Calendar dob = Calendar.getInstance();
+			dob.clear();
+			dob.set((int) readVarLong(data), data.readUnsignedByte(),
+					data.readUnsignedByte());
+			queries.add(new RecordedQuery(arrivalMicros * 1000, nanos,
+					new CsvPerson(String.valueOf(queries.size()), lastName,
+							firstName, gender, dob, alternateLastName, null),
+					ceiling, maxReturns, sourceSize));
+		}
+	}
+
+	/**
+	 * @see QueryRecorder#writeVarLong(java.io.DataOutputStream, long)
+	 */
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+}
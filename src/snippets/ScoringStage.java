@@ -0,0 +1,58 @@
+package snippets;
+
+/**
+ * A user defined penalty added to the confidence of every candidate, after
+ * the {@link NameMatcher}'s own rules. <br>
+ * Each candidate is scored by the stages from the cheapest to the most
+ * expensive, the built in name distances included: the first name distance
+ * costs {@link #FIRST_NAME_COST} and the last name difference
+ * {@link #LAST_NAME_COST}. Every stage is given what is left of the bound once
+ * the stages run before it and the minimums of the stages still to run are
+ * paid for, and the candidate is rejected as soon as a stage goes over it.
+ * A cheap stage that rejects many candidates saves the distances of all of
+ * them. <br>
+ * The penalties are added after the date of birth rules, so they don't move
+ * the thresholds those rules are attempted under. <br>
+ * Stages are called from any number of threads at once.
+ */
+public interface ScoringStage {
+
+	/**
+	 * Cost of the first name Levenshtein distance.
+	 */
+	int FIRST_NAME_COST = 100;
+
+	/**
+	 * Cost of the last name difference: up to four Levenshtein distances
+	 * against the last name, the alternate last name and their hyphenated
+	 * parts.
+	 */
+	int LAST_NAME_COST = 400;
+
+	/**
+	 * @return how expensive the stage is next to the others, cheapest first.
+	 *         Stages of equal cost run in the order they were given.
+	 */
+	int getCost();
+
+	/**
+	 * @return the least the stage adds to any candidate's confidence, 0 or
+	 *         more
+	 */
+	int getMinimum();
+
+	/**
+	 * @param person
+	 *            - {@link PersonNameMatcher} the person being matched
+	 * @param candidate
+	 *            - {@link PersonNameMatcher} the candidate being scored
+	 * @param budget
+	 *            the most the stage may add before the candidate is of no
+	 *            interest
+	 * @return what the stage adds to the confidence, at least
+	 *         {@link #getMinimum()}; anything over the budget (e.g. -1)
+	 *         rejects the candidate
+	 */
+	int score(PersonNameMatcher person, PersonNameMatcher candidate,
+			int budget);
+}
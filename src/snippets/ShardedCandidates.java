@@ -0,0 +1,194 @@
+package snippets;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The source persons split into shards, each prepared as its own
+ * {@link PreparedCandidates}, for matching the shards in parallel and merging
+ * their best matches. <br>
+ * The persons are split on their day of birth: no candidate born on another
+ * day of the month than the person can score under four confident
+ * increments, so at lower ceilings a match only reads the shards holding its
+ * day of birth. Each shard also knows which dates, months and years go with
+ * its days, so a match skips every shard whose least date of birth outcome
+ * is over the ceiling. With more than 31 shards a day's persons are split
+ * further on their year of birth, the first days of the month taking one
+ * shard more than the rest when the count isn't a multiple of 31. <br>
+ * A shard is matched on its own and hands back only its best matches, with
+ * their confidences and ordinals, so shards need not share memory with each
+ * other. <br>
+ * Immutable once built, so it can be shared by any number of threads.
+ */
+public class ShardedCandidates {
+
+	/**
+	 * Part of the source persons, with what its dates of birth can match.
+	 */
+	static final class Shard {
+		final PreparedCandidates candidates;
+
+		/**
+		 * Ordinal in the source persons of each person in the shard,
+		 * ascending.
+		 */
+		final int[] ordinals;
+
+		private final boolean[] days = new boolean[32];
+		private final boolean[] monthDays = new boolean[12 * 32];
+		private final Set<Integer> yearDays = new HashSet<Integer>();
+		private final Set<Integer> epochDays = new HashSet<Integer>();
+
+		private Shard(PreparedCandidates candidates, int[] ordinals) {
+			this.candidates = candidates;
+			this.ordinals = ordinals;
+			for (int i = 0; i < candidates.size(); i++) {
+				int day = candidates.days[i];
+				days[day] = true;
+				monthDays[candidates.months[i] * 32 + day] = true;
+				yearDays.add(candidates.years[i] * 32 + day);
+				epochDays.add(candidates.epochDays[i]);
+			}
+		}
+
+		boolean hasDay(int day) {
+			return days[day];
+		}
+
+		boolean hasMonthDay(int month, int day) {
+			return monthDays[month * 32 + day];
+		}
+
+		boolean hasYearDay(int year, int day) {
+			return yearDays.contains(year * 32 + day);
+		}
+
+		boolean hasEpochDay(int epochDay) {
+			return epochDays.contains(epochDay);
+		}
+	}
+
+	private final Shard[] shards;
+	private final int size;
+	private final boolean normalized;
+
+	/**
+	 * Split the source persons into one shard per processor.
+	 *
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 */
+	public ShardedCandidates(List<PersonNameMatcher> sourcePersons) {
+		this(sourcePersons, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 * @param shardCount
+	 *            number of shards to split them into
+	 */
+	public ShardedCandidates(List<PersonNameMatcher> sourcePersons,
+			int shardCount) {
+		this(sourcePersons, shardCount, false);
+	}
+
+	/**
+	 * @param sourcePersons
+	 *            - List<{@link PersonNameMatcher}> of Persons to match against
+	 * @param shardCount
+	 *            number of shards to split them into
+	 * @param normalizeNames
+	 *            keep the names in the form of {@link NameNormalizer}
+	 */
+	public ShardedCandidates(List<PersonNameMatcher> sourcePersons,
+			int shardCount, boolean normalizeNames) {
+		super();
+		if (shardCount < 1) {
+			throw new IllegalArgumentException(
+					"There must be at least one shard");
+		}
+		List<List<PersonNameMatcher>> persons = new ArrayList<List<PersonNameMatcher>>(
+				shardCount);
+		OrdinalList[] ordinals = new OrdinalList[shardCount];
+		for (int shard = 0; shard < shardCount; shard++) {
+			persons.add(new ArrayList<PersonNameMatcher>());
+			ordinals[shard] = new OrdinalList();
+		}
+		for (int ordinal = 0; ordinal < sourcePersons.size(); ordinal++) {
+			PersonNameMatcher person = sourcePersons.get(ordinal);
+			Calendar dob = person.getDateOfBirth();
+			if (dob == null) {
+				throw new IllegalArgumentException(
+						"The date of birth must not be null");
+			}
+			int shard = shardOf(dob.get(Calendar.YEAR),
+					dob.get(Calendar.DATE), shardCount);
+			persons.get(shard).add(person);
+			ordinals[shard].add(ordinal);
+		}
+
+		this.shards = new Shard[shardCount];
+		for (int shard = 0; shard < shardCount; shard++) {
+			shards[shard] = new Shard(new PreparedCandidates(
+					persons.get(shard), normalizeNames),
+					ordinals[shard].toSortedArray());
+		}
+		this.size = sourcePersons.size();
+		this.normalized = normalizeNames;
+	}
+
+	/**
+	 * Days are dealt round the shards; with more shards than days, each day
+	 * has its own group of shards, dealt round by year. The shards left over
+	 * from an even split go one each to the first days of the month, so no
+	 * shard is left empty.
+	 */
+	private static int shardOf(int year, int day, int shardCount) {
+		if (shardCount <= 31) {
+			return (day - 1) % shardCount;
+		}
+		int perDay = shardCount / 31;
+		int extra = shardCount % 31;
+		int first = (day - 1) * perDay + Math.min(day - 1, extra);
+		int count = day <= extra ? perDay + 1 : perDay;
+		return first + (year % count + count) % count;
+	}
+
+	/**
+	 * @return the number of source persons
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of shards
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * @param shard
+	 * @return the number of source persons in the shard
+	 */
+	public int getShardSize(int shard) {
+		return shards[shard].ordinals.length;
+	}
+
+	/**
+	 * @return true if the names are kept in the form of
+	 *         {@link NameNormalizer}
+	 */
+	public boolean isNormalized() {
+		return normalized;
+	}
+
+	Shard[] shards() {
+		return shards;
+	}
+}
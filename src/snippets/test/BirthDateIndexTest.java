@@ -0,0 +1,84 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.BirthDateIndex;
+import snippets.MatchRule;
+import snippets.MatchStatistics;
+import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+
+public class BirthDateIndexTest {
+
+	@Test
+	public void fuzzyNameMatch() {
+		Random random = new Random(24);
+		List<PersonNameMatcher> source = new ArrayList<PersonNameMatcher>();
+		// Over two full containers of ordinals, one in five born on the
+		// first so its bitmaps are dense
+		for (int i = 0; i < 140000; i++) {
+			PersonNameMatcher person = TestPersons.person(random);
+			if (random.nextInt(5) == 0) {
+				person.getDateOfBirth().set(Calendar.DATE, 1);
+			}
+			source.add(person);
+		}
+		PreparedCandidates prepared = new PreparedCandidates(source);
+		BirthDateIndex index = new BirthDateIndex(prepared);
+		Assert.assertEquals(source.size(), index.size());
+
+		for (NameMatcher matcher : new NameMatcher[] { new NameMatcher(),
+				new NameMatcher(2, 5, 5, null, null, 2),
+				new NameMatcher(5, 4, 5, null, null, 2) }) {
+			for (int i = 0; i < 24; i++) {
+				PersonNameMatcher person = TestPersons.person(random);
+				int ceiling = i % 10;
+				int maxReturns = 1 + i % 7;
+				Assert.assertEquals(matcher.fuzzyNameMatch(person, prepared,
+						null, ceiling, maxReturns), matcher.fuzzyNameMatch(
+						person, index, null, ceiling, maxReturns));
+			}
+		}
+	}
+
+	@Test
+	public void onlyScoresCandidatesThatCanMatch() {
+		Random random = new Random(42);
+		List<PersonNameMatcher> source = new ArrayList<PersonNameMatcher>();
+		for (int i = 0; i < 3000; i++) {
+			source.add(TestPersons.person(random));
+		}
+		BirthDateIndex index = new BirthDateIndex(source);
+		PersonNameMatcher person = TestPersons.person(random);
+		Calendar dob = person.getDateOfBirth();
+
+		MatchStatistics statistics = new MatchStatistics();
+		NameMatcher matcher = new NameMatcher(NameMatcherConfig.DEFAULT,
+				statistics);
+		// Same month and day, or same year and day
+		matcher.fuzzyNameMatch(person, index, null, 5, 5);
+		int expected = 0;
+		for (PersonNameMatcher candidate : source) {
+			Calendar candidateDob = candidate.getDateOfBirth();
+			if (candidateDob.get(Calendar.DATE) == dob.get(Calendar.DATE)
+					&& (candidateDob.get(Calendar.MONTH) == dob
+							.get(Calendar.MONTH) || candidateDob
+							.get(Calendar.YEAR) == dob.get(Calendar.YEAR))) {
+				expected++;
+			}
+		}
+		long scored = 0;
+		for (MatchRule rule : MatchRule.values()) {
+			scored += statistics.getCandidates(rule);
+		}
+		Assert.assertEquals(expected, scored);
+	}
+}
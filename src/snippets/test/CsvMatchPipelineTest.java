@@ -0,0 +1,144 @@
+package snippets.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import snippets.CsvMatchPipeline;
+import snippets.CsvPerson;
+import snippets.NameMatcher;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+
+public class CsvMatchPipelineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String line(Random random) {
+		PersonNameMatcher person = TestPersons.person(random);
+		Calendar dob = person.getDateOfBirth();
+		return person.getLastName() + "," + person.getFirstName() + ","
+				+ person.getGender() + ","
+				+ String.format("%04d-%02d-%02d", dob.get(Calendar.YEAR),
+						dob.get(Calendar.MONTH) + 1, dob.get(Calendar.DATE));
+	}
+
+	private Path write(String... lines) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+		return file;
+	}
+
+	@Test
+	public void run() throws IOException {
+		Random random = new Random(23);
+		String[] members = new String[301];
+		members[0] = "id,lastName,firstName,gender,dateOfBirth";
+		for (int i = 1; i < members.length; i++) {
+			members[i] = "m" + i + "," + line(random);
+		}
+		String[] claims = new String[102];
+		claims[0] = "DateOfBirth,Gender,FirstName,LastName,AlternateLastName,Id";
+		for (int i = 1; i < claims.length - 1; i++) {
+			String[] fields = line(random).split(",");
+			claims[i] = fields[3] + "," + fields[2] + "," + fields[1] + ","
+					+ fields[0] + "," + (i % 3 == 0 ? "SMITH" : "") + ",c" + i;
+		}
+		claims[claims.length - 1] = "1970-01-10,F,\"JOANNE, JO\",\"SMITH\","
+				+ ",\"c,\"\"last\"\"\"";
+		Path memberFile = write(members);
+		Path claimFile = write(claims);
+		Path matchFile = folder.newFile().toPath();
+
+		NameMatcher matcher = new NameMatcher();
+		CsvMatchPipeline.Report report = new CsvMatchPipeline(matcher, 6, 3,
+				2, 7, 3).run(memberFile, claimFile, matchFile);
+
+		// The members each claim matched, best first, without confidences
+		List<String> expecteds = new ArrayList<String>();
+		PreparedCandidates prepared = new PreparedCandidates(
+				CsvMatchPipeline.readPersons(memberFile));
+		long matches = 0;
+		for (PersonNameMatcher person : CsvMatchPipeline
+				.readPersons(claimFile)) {
+			CsvPerson claim = (CsvPerson) person;
+			String claimId = claim.getId().contains(",") ? "\"c,\"\"last\"\"\""
+					: claim.getId();
+			List<PersonNameMatcher> found = matcher.fuzzyNameMatch(claim,
+					prepared, claim.getAlternateLastName(), 6, 3);
+			if (found.isEmpty()) {
+				expecteds.add(claimId + ",");
+			}
+			for (PersonNameMatcher match : found) {
+				expecteds.add(claimId + "," + ((CsvPerson) match).getId());
+			}
+			matches += found.size();
+		}
+		List<String> lines = Files.readAllLines(matchFile,
+				StandardCharsets.UTF_8);
+		Assert.assertEquals("claimId,memberId,confidence", lines.get(0));
+		List<String> actuals = new ArrayList<String>();
+		for (String line : lines.subList(1, lines.size())) {
+			int comma = line.lastIndexOf(',');
+			String confidence = line.substring(comma + 1);
+			Assert.assertTrue(line, confidence.isEmpty()
+					|| Integer.parseInt(confidence) <= 6);
+			actuals.add(line.substring(0, comma));
+		}
+		Assert.assertEquals(expecteds, actuals);
+		Assert.assertEquals(claims.length - 1, report.getClaims());
+		Assert.assertEquals(matches, report.getMatches());
+		Assert.assertTrue(matches > 0);
+	}
+
+	@Test
+	public void malformedClaim() throws IOException {
+		Path memberFile = write("lastName,firstName,gender,dateOfBirth",
+				"SMITH,LAURA,F,1970-01-10");
+		Path claimFile = write("lastName,firstName,gender,dateOfBirth",
+				"SMITH,LAURA,F,1970-01-10", "SMITH,LAURA,F,1970-13-10");
+		try {
+			new CsvMatchPipeline(new NameMatcher(), 4, 1).run(memberFile,
+					claimFile, folder.newFile().toPath());
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage(),
+					e.getMessage().contains("line 3"));
+		}
+	}
+
+	@Test
+	public void unwritableMatches() throws IOException {
+		Path memberFile = write("lastName,firstName,gender,dateOfBirth",
+				"SMITH,LAURA,F,1970-01-10");
+		Path claimFile = write("lastName,firstName,gender,dateOfBirth",
+				"SMITH,LAURA,F,1970-01-10");
+		Set<Thread> before = Thread.getAllStackTraces().keySet();
+		try {
+			new CsvMatchPipeline(new NameMatcher(), 4, 1).run(memberFile,
+					claimFile, folder.getRoot().toPath()
+							.resolve("missing/matches.csv"));
+			Assert.fail();
+		} catch (NoSuchFileException e) {
+			// No thread is left behind
+		}
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			Assert.assertTrue(thread.getName(), before.contains(thread)
+					|| !thread.getName().startsWith("csv-"));
+		}
+	}
+}
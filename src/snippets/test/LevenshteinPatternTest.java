@@ -0,0 +1,173 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.NameMatcher;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+
+/**
+ * The name distances, through {@link NameMatcher}: a candidate born on the
+ * person's date, of the same gender and with the same last name, scores the
+ * distance between the first names.
+ */
+public class LevenshteinPatternTest {
+
+	private static final NameMatcher MATCHER = new NameMatcher();
+
+	/**
+	 * Few enough characters that strings share many, ASCII and not.
+	 */
+	private static final char[] CHARACTERS = { 'A', 'B', 'C', 'E', 'N', 'a',
+			'-', ' ', '\u00D1', '\u00E9', '\u00DF', '\u4E2D', '\uD83D',
+			'\uDE00' };
+
+	private static PersonNameMatcher person(String firstName) {
+		return TestPersons.person(firstName, "CAGEY", "M", 1970, 0, 1);
+	}
+
+	/**
+	 * @return true if text is within the ceiling of pattern
+	 */
+	private static boolean matches(String pattern, String text, int ceiling) {
+		return !MATCHER.fuzzyNameMatch(person(pattern),
+				Collections.singletonList(person(text)), null, ceiling, 1)
+				.isEmpty();
+	}
+
+	/**
+	 * @return true if text, prepared, is within the ceiling of pattern
+	 */
+	private static boolean matchesPrepared(String pattern, String text,
+			int ceiling) {
+		return !MATCHER.fuzzyNameMatch(person(pattern),
+				new PreparedCandidates(Collections.singletonList(person(text))),
+				null, ceiling, 1).isEmpty();
+	}
+
+	private static String string(Random random, int maxLength) {
+		char[] chars = new char[random.nextInt(maxLength + 1)];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = CHARACTERS[random.nextInt(CHARACTERS.length)];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * A string and the same string with a few edits, so the distance is
+	 * often near the threshold.
+	 */
+	private static String edit(Random random, String s) {
+		StringBuilder edited = new StringBuilder(s);
+		for (int edits = random.nextInt(6); edits > 0; edits--) {
+			int at = random.nextInt(edited.length() + 1);
+			char c = CHARACTERS[random.nextInt(CHARACTERS.length)];
+			switch (random.nextInt(3)) {
+			case 0:
+				edited.insert(at, c);
+				break;
+			case 1:
+				if (at < edited.length()) {
+					edited.deleteCharAt(at);
+				}
+				break;
+			default:
+				if (at < edited.length()) {
+					edited.setCharAt(at, c);
+				}
+			}
+		}
+		return edited.toString();
+	}
+
+	@Test
+	public void distance() {
+		Random random = new Random(15);
+		for (int i = 0; i < 100000; i++) {
+			// Up to 80 characters, so some are over the 64 of one word
+			String pattern = string(random, i % 10 == 0 ? 80 : 16);
+			String text = random.nextBoolean() ? edit(random, pattern)
+					: string(random, i % 10 == 0 ? 80 : 16);
+			int ceiling = i % 7 == 0 ? 0 : i % 13 == 0 ? 100 : random
+					.nextInt(12);
+			int distance = StringUtils.getLevenshteinDistance(text, pattern);
+			String message = pattern + " " + text + " " + ceiling;
+			Assert.assertEquals(message, distance <= ceiling,
+					matches(pattern, text, ceiling));
+			if (distance <= ceiling && distance > 0) {
+				Assert.assertFalse(message,
+						matches(pattern, text, distance - 1));
+			}
+		}
+
+		Assert.assertTrue(matches("", "", 0));
+		Assert.assertFalse(matches("", "A", 0));
+		Assert.assertTrue(matches("", "ABC", 3));
+		Assert.assertFalse(matches("ABC", "", 2));
+		Assert.assertTrue(matches("ABC", "", 3));
+	}
+
+	/**
+	 * Prepared candidates bound the distances by their grams before
+	 * computing them, so a bound over a distance loses the match.
+	 */
+	@Test
+	public void lowerBound() {
+		// Letters, and others that share the bits of their grams: 0 and 6,
+		// - 3 and E-acute, a and 1
+		char[] characters = { 'A', 'B', 'E', 'N', 'S', '0', '6', '-', '3',
+				'\u00C9', 'a', '1', ' ' };
+		Random random = new Random(22);
+		for (int i = 0; i < 10000; i++) {
+			char[] chars = new char[random.nextInt(i % 10 == 0 ? 70 : 12)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = characters[random.nextInt(characters.length)];
+			}
+			String s = new String(chars);
+			int ceiling = random.nextInt(i % 10 == 0 ? 70 : 12);
+
+			List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>();
+			Set<PersonNameMatcher> expected = Collections
+					.newSetFromMap(new IdentityHashMap<PersonNameMatcher, Boolean>());
+			for (int k = 0; k < 20; k++) {
+				String t;
+				if (random.nextBoolean()) {
+					t = edit(random, s);
+				} else {
+					chars = new char[random.nextInt(12)];
+					for (int j = 0; j < chars.length; j++) {
+						chars[j] = characters[random
+								.nextInt(characters.length)];
+					}
+					t = new String(chars);
+				}
+				PersonNameMatcher candidate = person(t);
+				candidates.add(candidate);
+				if (StringUtils.getLevenshteinDistance(s, t) <= ceiling) {
+					expected.add(candidate);
+				}
+			}
+
+			Set<PersonNameMatcher> actual = Collections
+					.newSetFromMap(new IdentityHashMap<PersonNameMatcher, Boolean>());
+			actual.addAll(MATCHER.fuzzyNameMatch(person(s),
+					new PreparedCandidates(candidates), null, ceiling,
+					candidates.size()));
+			Assert.assertEquals(s + " " + ceiling, expected, actual);
+		}
+
+		// 0 and 6 share their bits, ABC and XYZ none
+		Assert.assertTrue(matchesPrepared("0", "6", 1));
+		Assert.assertTrue(matchesPrepared("ABC", "XYZ", 3));
+		Assert.assertFalse(matchesPrepared("ABC", "XYZ", 2));
+	}
+}
@@ -0,0 +1,156 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.LiveCandidates;
+import snippets.NameMatcher;
+import snippets.PersonNameMatcher;
+
+public class LiveCandidatesTest {
+
+	@Test
+	public void putAndRemove() {
+		Random random = new Random(14);
+		LiveCandidates<Integer> live = new LiveCandidates<Integer>();
+		Map<Integer, PersonNameMatcher> model = new HashMap<Integer, PersonNameMatcher>();
+		NameMatcher matcher = new NameMatcher();
+
+		for (int step = 0; step < 5000; step++) {
+			Integer key = random.nextInt(3000);
+			if (random.nextInt(4) == 0) {
+				Assert.assertSame(model.remove(key), live.remove(key));
+			} else {
+				TestPersonNameMatcher person = TestPersons.person(random);
+				Assert.assertSame(model.put(key, person),
+						live.put(key, person));
+			}
+			Assert.assertEquals(model.size(), live.size());
+
+			if (step % 500 == 0) {
+				PersonNameMatcher person = TestPersons.person(random);
+				List<PersonNameMatcher> source = new ArrayList<PersonNameMatcher>(
+						model.values());
+				List<PersonNameMatcher> expecteds = matcher.fuzzyNameMatch(
+						person, source, null, 6, Integer.MAX_VALUE);
+				List<PersonNameMatcher> actuals = matcher.fuzzyNameMatch(
+						person, live, null, 6, Integer.MAX_VALUE);
+				Assert.assertEquals(expecteds.size(), actuals.size());
+				Assert.assertEquals(new HashSet<PersonNameMatcher>(expecteds),
+						new HashSet<PersonNameMatcher>(actuals));
+			}
+		}
+		for (Map.Entry<Integer, PersonNameMatcher> entry : model.entrySet()) {
+			Assert.assertSame(entry.getValue(), live.get(entry.getKey()));
+		}
+	}
+
+	/**
+	 * @return the lowest ceiling the candidate matches the person under
+	 */
+	private static int confidence(NameMatcher matcher,
+			PersonNameMatcher person, PersonNameMatcher candidate) {
+		List<PersonNameMatcher> one = Collections.singletonList(candidate);
+		for (int ceiling = 0;; ceiling++) {
+			if (!matcher.fuzzyNameMatch(person, one, null, ceiling, 1)
+					.isEmpty()) {
+				return ceiling;
+			}
+		}
+	}
+
+	@Test
+	public void matchWhileChanging() throws InterruptedException {
+		final LiveCandidates<Integer> live = new LiveCandidates<Integer>();
+		Random random = new Random(41);
+
+		// Keys under 1000 are never touched by the writer, and their names
+		// are too far from the writer's for its persons to match them
+		String[] lastNames = { "WASHINGTON", "WASHINGTEN", "WASHINTON" };
+		String[] firstNames = { "ALBERT", "ALBERTO", "ALBRECHT" };
+		List<PersonNameMatcher> fixed = new ArrayList<PersonNameMatcher>();
+		for (int i = 0; i < 1000; i++) {
+			TestPersonNameMatcher person = TestPersons.person(random);
+			person.setLastName(lastNames[random.nextInt(lastNames.length)]);
+			person.setFirstName(firstNames[random.nextInt(firstNames.length)]);
+			fixed.add(person);
+			live.put(i, person);
+		}
+		for (int i = 1000; i < 5000; i++) {
+			live.put(i, TestPersons.person(random));
+		}
+
+		// What the fixed persons match, by confidence
+		NameMatcher matcher = new NameMatcher();
+		List<PersonNameMatcher> persons = new ArrayList<PersonNameMatcher>();
+		List<Set<PersonNameMatcher>> expecteds = new ArrayList<Set<PersonNameMatcher>>();
+		List<List<Integer>> expectedConfidences = new ArrayList<List<Integer>>();
+		for (int i = 0; i < 20; i++) {
+			PersonNameMatcher person = fixed.get(i * 47);
+			List<PersonNameMatcher> found = matcher.fuzzyNameMatch(person,
+					fixed, null, 6, fixed.size());
+			List<Integer> confidences = new ArrayList<Integer>();
+			for (PersonNameMatcher match : found) {
+				confidences.add(confidence(matcher, person, match));
+			}
+			Assert.assertTrue(found.size() > 1);
+			persons.add(person);
+			expecteds.add(new HashSet<PersonNameMatcher>(found));
+			expectedConfidences.add(confidences);
+		}
+
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				Random random = new Random(7);
+				try {
+					while (!done.get()) {
+						Integer key = 1000 + random.nextInt(5000);
+						if (random.nextBoolean()) {
+							live.remove(key);
+						} else {
+							live.put(key, TestPersons.person(random));
+						}
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		};
+		writer.start();
+
+		// Every match is found every time; only the order of equal
+		// confidences may move as the writer removes persons
+		try {
+			for (int i = 0; i < 100; i++) {
+				int j = i % persons.size();
+				List<PersonNameMatcher> found = matcher.fuzzyNameMatch(
+						persons.get(j), live, null, 6, fixed.size());
+				Assert.assertEquals(expecteds.get(j),
+						new HashSet<PersonNameMatcher>(found));
+				List<Integer> confidences = new ArrayList<Integer>();
+				for (PersonNameMatcher match : found) {
+					confidences.add(confidence(matcher, persons.get(j), match));
+				}
+				Assert.assertEquals(expectedConfidences.get(j), confidences);
+			}
+		} finally {
+			done.set(true);
+			writer.join();
+		}
+		Assert.assertNull(failure.get());
+	}
+}
@@ -0,0 +1,125 @@
+package snippets.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import snippets.BlockingKey;
+import snippets.MappedCandidates;
+import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PersonIndex;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+
+public class MappedCandidatesTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<PersonNameMatcher> persons() {
+		String[] lastNames = { "CAGEY", "CAGE", "MCNICKOLS",
+				"MCNICKOLS-CAGEY", "SMITH", "SMYTH", "WASHINGTON",
+				"M\u00DCLLER" };
+		String[] firstNames = { "NICHOLAS", "NICOLAS", "JOANNE", "LAURA",
+				"MICHELLE", "ALBERT" };
+
+		List<PersonNameMatcher> persons = new ArrayList<PersonNameMatcher>(
+				2000);
+		for (int i = 0; i < 2000; i++) {
+			persons.add(TestPersons.person(firstNames[i % firstNames.length],
+					lastNames[i % lastNames.length], i % 2 == 0 ? "M" : "F",
+					1970 + i % 5, i % 3, 1 + i % 31));
+		}
+		return persons;
+	}
+
+	private static List<PersonNameMatcher> fromFile(
+			List<PersonNameMatcher> persons, List<PersonNameMatcher> found) {
+		List<PersonNameMatcher> result = new ArrayList<PersonNameMatcher>();
+		for (PersonNameMatcher candidate : found) {
+			result.add(persons.get(((MappedCandidates.Candidate) candidate)
+					.getOrdinal()));
+		}
+		return result;
+	}
+
+	@Test
+	public void fuzzyNameMatch() throws IOException {
+		List<PersonNameMatcher> persons = persons();
+		File file = folder.newFile();
+		MappedCandidates.write(persons, file);
+		MappedCandidates mapped = new MappedCandidates(file);
+		PreparedCandidates prepared = new PreparedCandidates(persons);
+		Assert.assertEquals(persons.size(), mapped.size());
+
+		NameMatcher matcher = new NameMatcher();
+		for (int i = 0; i < 20; i++) {
+			PersonNameMatcher person = persons.get(i * 97);
+			List<PersonNameMatcher> expecteds = matcher.fuzzyNameMatch(person,
+					prepared, "CAGEY", 12, 30);
+			Assert.assertFalse(expecteds.isEmpty());
+			Assert.assertEquals(expecteds, fromFile(persons,
+					matcher.fuzzyNameMatch(person, mapped, "CAGEY", 12, 30)));
+		}
+
+		MappedCandidates.Candidate candidate = mapped.getPerson(7);
+		PersonNameMatcher source = persons.get(7);
+		Assert.assertEquals(source.getFirstName(), candidate.getFirstName());
+		Assert.assertEquals(source.getLastName(), candidate.getLastName());
+		Assert.assertEquals(source.getGender(), candidate.getGender());
+		Assert.assertEquals(source.getDateOfBirth().getTime(), candidate
+				.getDateOfBirth().getTime());
+	}
+
+	@Test
+	public void neverWeakMatches() throws IOException {
+		List<PersonNameMatcher> persons = persons();
+		File file = folder.newFile();
+		MappedCandidates.write(persons, file);
+		MappedCandidates mapped = new MappedCandidates(file);
+		PreparedCandidates prepared = new PreparedCandidates(persons);
+
+		// High enough for the weak match rule to be tried, which would give
+		// the person's weakMatch a Candidate it can't cast
+		NameMatcher matcher = new NameMatcher(new NameMatcherConfig(null,
+				null, 12, null));
+		PersonNameMatcher person = persons.get(5);
+		List<PersonNameMatcher> found = matcher.fuzzyNameMatch(person,
+				mapped, null, 10, 40);
+		Assert.assertEquals(40, found.size());
+		Assert.assertEquals(matcher.fuzzyNameMatch(person, prepared, null,
+				10, 40), fromFile(persons, found));
+	}
+
+	@Test
+	public void blocks() throws IOException {
+		List<PersonNameMatcher> persons = persons();
+		File file = folder.newFile();
+		MappedCandidates.write(persons, EnumSet.allOf(BlockingKey.class), file);
+		MappedCandidates mapped = new MappedCandidates(file);
+		PersonIndex index = new PersonIndex(persons);
+
+		NameMatcher matcher = new NameMatcher();
+		for (int i = 0; i < 20; i++) {
+			PersonNameMatcher person = persons.get(i * 89);
+			Assert.assertArrayEquals(index.candidates(person, "SMITH", 8),
+					mapped.candidates(person, "SMITH", 8));
+			Assert.assertEquals(matcher.fuzzyNameMatch(person, index,
+					"SMITH", 8, 10), fromFile(persons,
+					matcher.fuzzyNameMatch(person, mapped, "SMITH", 8, 10)));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void notACandidateFile() throws IOException {
+		new MappedCandidates(folder.newFile());
+	}
+}
@@ -0,0 +1,70 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.MatchCache;
+import snippets.NameMatcher;
+import snippets.PersonNameMatcher;
+
+public class MatchCacheTest {
+
+	@Test
+	public void fuzzyNameMatch() {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3,
+				24));
+		candidates.add(TestPersons.person("NICOLAS", "CAGE", "M", 1957, 3, 24));
+		candidates.add(TestPersons.person("JOANNE", "WASHINGTON", "F", 1962, 4,
+				25));
+
+		NameMatcher matcher = new NameMatcher();
+		MatchCache cache = new MatchCache(matcher, candidates, 2);
+		List<PersonNameMatcher> expecteds = matcher.fuzzyNameMatch(
+				TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24),
+				candidates,
+				null, 8, 5);
+		Assert.assertEquals(2, expecteds.size());
+
+		// A different object with the same fields is a hit
+		Assert.assertEquals(expecteds, cache.fuzzyNameMatch(
+				TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24), null,
+				8, 5));
+		Assert.assertEquals(expecteds, cache.fuzzyNameMatch(
+				TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24), "",
+				8, 5));
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(1, cache.getHits());
+
+		// Other parameters are other matches
+		Assert.assertEquals(1, cache.fuzzyNameMatch(
+				TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24), null,
+				8, 1) .size());
+		Assert.assertEquals(1, cache.fuzzyNameMatch(
+				TestPersons.person("JOANNE", "WASHINGTON", "F", 1962, 4, 25),
+				null, 0, 1) .size());
+		Assert.assertEquals(3, cache.getMisses());
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertEquals(2, cache.size());
+
+		// The least recently used match was evicted
+		cache.fuzzyNameMatch(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957,
+				3, 24), null, 8, 5);
+		Assert.assertEquals(4, cache.getMisses());
+
+		// New source persons drop the cached matches
+		List<PersonNameMatcher> more = new ArrayList<PersonNameMatcher>(
+				candidates);
+		more.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1958, 3, 24));
+		cache.setSourcePersons(more);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(3, cache.fuzzyNameMatch(
+				TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24), null,
+				8, 5) .size());
+		Assert.assertEquals(5, cache.getMisses());
+	}
+}
@@ -0,0 +1,273 @@
+package snippets.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.MatchServer;
+import snippets.MatchServerConfig;
+import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+import snippets.ScoringStage;
+
+public class MatchServerTest {
+
+	private static HttpURLConnection connect(int port, String query)
+			throws IOException {
+		return (HttpURLConnection) new URL("http://localhost:" + port
+				+ "/match?" + query).openConnection();
+	}
+
+	private static String get(int port, String query) throws IOException {
+		return get(connect(port, query));
+	}
+
+	private static String get(HttpURLConnection connection)
+			throws IOException {
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream()
+				: connection.getErrorStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int read; (read = in.read(buffer)) > 0;) {
+			body.write(buffer, 0, read);
+		}
+		in.close();
+		return status + " " + body.toString("UTF-8");
+	}
+
+	@Test
+	public void match() throws Exception {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3,
+				24));
+		candidates.add(TestPersons.person("NICOLAS", "CAGE", "M", 1957, 3, 24));
+		candidates.add(TestPersons.person("JOANNE", "WASHINGTON", "F", 1962, 4,
+				25));
+		candidates.add(TestPersons.person("JO \"ANNE\"", "WASHINGTON", "F",
+				1962, 4, 25));
+
+		NameMatcher matcher = new NameMatcher();
+		final MatchServer server = new MatchServer(matcher,
+				new PreparedCandidates(candidates), new InetSocketAddress(
+						"localhost", 0), new MatchServerConfig(20, 8, null),
+				null);
+		server.start();
+		try {
+			Assert.assertEquals(
+					"200 [{\"ordinal\":0,\"confidence\":0,"
+							+ "\"lastName\":\"CAGEY\",\"firstName\":\"NICHOLAS\","
+							+ "\"gender\":\"M\",\"dateOfBirth\":\"1957-04-24\"},"
+							+ "{\"ordinal\":1,\"confidence\":2,"
+							+ "\"lastName\":\"CAGE\",\"firstName\":\"NICOLAS\","
+							+ "\"gender\":\"M\",\"dateOfBirth\":\"1957-04-24\"}]",
+					get(server.getPort(),
+							"lastName=CAGEY&firstName=NICHOLAS&gender=M"
+									+ "&dateOfBirth=1957-04-24&ceiling=8&maxReturns=5"));
+			Assert.assertEquals(
+					"200 [{\"ordinal\":3,\"confidence\":0,"
+							+ "\"lastName\":\"WASHINGTON\",\"firstName\":\"JO \\\"ANNE\\\"\","
+							+ "\"gender\":\"F\",\"dateOfBirth\":\"1962-05-25\"}]",
+					get(server.getPort(),
+							"lastName=WASHINGTON&firstName=JO%20%22ANNE%22&gender=F"
+									+ "&dateOfBirth=1962-05-25"));
+			Assert.assertEquals("200 []", get(server.getPort(),
+					"lastName=SMITH&firstName=JOHN&gender=M"
+							+ "&dateOfBirth=1980-01-01&ceiling=4"));
+			Assert.assertTrue(get(server.getPort(),
+					"lastName=CAGEY&firstName=NICHOLAS").startsWith("400 "));
+			Assert.assertEquals("400 dateOfBirth must be a yyyy-MM-dd date",
+					get(server.getPort(), "lastName=CAGEY&firstName=NICHOLAS"
+							+ "&dateOfBirth=1957-02-30"));
+			Assert.assertEquals("400 dateOfBirth must be a yyyy-MM-dd date",
+					get(server.getPort(), "lastName=CAGEY&firstName=NICHOLAS"
+							+ "&dateOfBirth=1957-FEB-01"));
+			Assert.assertEquals("400 lastName is required", get(
+					server.getPort(), "firstName=JOHN&dateOfBirth=1980-01-01"));
+			Assert.assertEquals("400 firstName is required", get(
+					server.getPort(),
+					"lastName=SMITH&firstName=%20&dateOfBirth=1980-01-01"));
+
+			// Concurrent requests are answered as if asked one by one
+			final String[] queries = {
+					"lastName=CAGE&firstName=NICOLAS&gender=M&dateOfBirth=1957-04-24&ceiling=8&maxReturns=5",
+					"lastName=WASHINGTON&firstName=JOANNE&gender=F&dateOfBirth=1962-05-25&ceiling=8&maxReturns=1",
+					"lastName=CAGEY&firstName=NICK&gender=M&dateOfBirth=1957-04-24&ceiling=12&maxReturns=2" };
+			List<String> expecteds = new ArrayList<String>();
+			for (String query : queries) {
+				expecteds.add(get(server.getPort(), query));
+			}
+			ExecutorService clients = Executors.newFixedThreadPool(6);
+			try {
+				List<Future<String>> responses = new ArrayList<Future<String>>();
+				for (int i = 0; i < 30; i++) {
+					final String query = queries[i % queries.length];
+					responses.add(clients.submit(new Callable<String>() {
+						@Override
+						public String call() throws Exception {
+							return get(server.getPort(), query);
+						}
+					}));
+				}
+				for (int i = 0; i < responses.size(); i++) {
+					Assert.assertEquals(expecteds.get(i % queries.length),
+							responses.get(i).get());
+				}
+			} finally {
+				clients.shutdown();
+			}
+			Assert.assertEquals(36, server.getRequests());
+			Assert.assertTrue(server.getBatches() <= server.getRequests());
+			Assert.assertEquals(0, server.getRejected());
+		} finally {
+			server.close();
+		}
+	}
+
+	/**
+	 * Throws for persons named BOOM.
+	 */
+	private static final class FailingStage implements ScoringStage {
+		@Override
+		public int getCost() {
+			return 0;
+		}
+
+		@Override
+		public int getMinimum() {
+			return 0;
+		}
+
+		@Override
+		public int score(PersonNameMatcher person,
+				PersonNameMatcher candidate, int budget) {
+			if ("BOOM".equals(person.getLastName())) {
+				throw new IllegalArgumentException("Boom");
+			}
+			return 0;
+		}
+	}
+
+	@Test
+	public void failureOnlyFailsItsOwnRequest() throws Exception {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("JOHN", "SMITH", "M", 1980, 0, 1));
+		NameMatcher matcher = new NameMatcher(new NameMatcherConfig(null,
+				null, null, null, Arrays.<ScoringStage> asList(
+						new FailingStage())));
+
+		// Both requests are in one batch: it closes when the second arrives
+		final MatchServer server = new MatchServer(matcher,
+				new PreparedCandidates(candidates), new InetSocketAddress(
+						"localhost", 0), new MatchServerConfig(10000, 2, null),
+				null);
+		server.start();
+		ExecutorService clients = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> good = clients.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return get(server.getPort(),
+							"lastName=SMITH&firstName=JOHN&gender=M&dateOfBirth=1980-01-01");
+				}
+			});
+			Future<String> bad = clients.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return get(server.getPort(),
+							"lastName=BOOM&firstName=JOHN&gender=M&dateOfBirth=1980-01-01");
+				}
+			});
+			Assert.assertTrue(good.get().startsWith("200 [{\"ordinal\":0,"));
+			Assert.assertEquals("500 Boom", bad.get());
+			Assert.assertEquals(1, server.getBatches());
+		} finally {
+			clients.shutdown();
+			server.close();
+		}
+	}
+
+	@Test
+	public void overloaded() throws Exception {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("JOHN", "SMITH", "M", 1980, 0, 1));
+
+		// One request in flight, waiting a second for others to join it
+		final MatchServer server = new MatchServer(new NameMatcher(),
+				new PreparedCandidates(candidates), new InetSocketAddress(
+						"localhost", 0), new MatchServerConfig(1000, null, 1),
+				null);
+		server.start();
+		ExecutorService clients = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> first = clients.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return get(server.getPort(),
+							"lastName=SMITH&firstName=JOHN&gender=M&dateOfBirth=1980-01-01");
+				}
+			});
+			Thread.sleep(300);
+
+			HttpURLConnection second = connect(server.getPort(),
+					"lastName=SMITH&firstName=JON&dateOfBirth=1980-01-01");
+			Assert.assertEquals("503 Too many requests in flight", get(second));
+			Assert.assertEquals("1", second.getHeaderField("Retry-After"));
+			Assert.assertEquals(1, server.getRejected());
+
+			Assert.assertTrue(first.get().startsWith("200 [{"));
+			Assert.assertEquals(1, server.getRequests());
+		} finally {
+			clients.shutdown();
+			server.close();
+		}
+	}
+
+	@Test
+	public void closeAnswersWaitingRequests() throws Exception {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("JOHN", "SMITH", "M", 1980, 0, 1));
+		final MatchServer server = new MatchServer(new NameMatcher(),
+				new PreparedCandidates(candidates), new InetSocketAddress(
+						"localhost", 0), new MatchServerConfig(60000, null,
+						null), null);
+		server.start();
+		ExecutorService clients = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> waiting = clients.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return get(server.getPort(),
+							"lastName=SMITH&firstName=JOHN&gender=M&dateOfBirth=1980-01-01");
+				}
+			});
+			Thread.sleep(300);
+			server.close();
+			Assert.assertEquals("503 Shutting down",
+					waiting.get(10, TimeUnit.SECONDS));
+		} finally {
+			clients.shutdown();
+			server.close();
+		}
+	}
+}
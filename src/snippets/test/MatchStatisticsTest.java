@@ -0,0 +1,63 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.MatchRule;
+import snippets.MatchStatistics;
+import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PersonNameMatcher;
+
+public class MatchStatisticsTest {
+
+	@Test
+	public void record() {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3,
+				24));
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1958, 3,
+				24));
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3,
+				12));
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 5,
+				24));
+		candidates.add(TestPersons.person("ALBERT", "WASHINGTON", "M", 1957, 3,
+				24));
+
+		MatchStatistics statistics = new MatchStatistics();
+		NameMatcher matcher = new NameMatcher(NameMatcherConfig.DEFAULT,
+				statistics);
+		PersonNameMatcher person = TestPersons.person("NICHOLAS", "CAGEY", "M",
+				1957, 3, 21);
+		matcher.fuzzyNameMatch(person, candidates, null, 8, 5);
+		person = TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24);
+		matcher.fuzzyNameMatch(person, candidates, null, 8, 5);
+
+		Assert.assertEquals(2, statistics.getQueries());
+		Assert.assertEquals(1,
+				statistics.getCandidates(MatchRule.DOB_AND_GENDER));
+		Assert.assertEquals(1,
+				statistics.getCandidates(MatchRule.YEAR_OF_BIRTH));
+		Assert.assertEquals(1,
+				statistics.getCandidates(MatchRule.MONTH_OF_BIRTH));
+		Assert.assertEquals(1,
+				statistics.getCandidates(MatchRule.TRANSPOSED_DAY));
+		Assert.assertEquals(0,
+				statistics.getCandidates(MatchRule.WEAK_MATCH));
+		Assert.assertEquals(1,
+				statistics.getCandidates(MatchRule.FALL_THROUGH));
+		Assert.assertEquals(5,
+				statistics.getCandidates(MatchRule.REJECTED));
+		Assert.assertEquals(0, statistics.getWeakMatches());
+		Assert.assertTrue(statistics.getLevenshteinCalls() > 0);
+		Assert.assertTrue(statistics.getLevenshteinCalls(8) > 0);
+		Assert.assertTrue(statistics.getLatencyNanos(50) > 0);
+		Assert.assertTrue(statistics.getLatencyNanos(100) <= 2 * statistics
+				.getNanos());
+	}
+}
@@ -1,14 +1,27 @@
 package snippets.test;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
+import snippets.MatchResult;
 import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PreparedCandidates;
 import snippets.PersonNameMatcher;
+import snippets.ScoringStage;
 
 public class NameMatcherTest {
 
@@ -228,4 +241,230 @@ public class NameMatcherTest {
 				actuals.toArray(new TestPersonNameMatcher[0]));
 
 	}
+
+	@Test
+	public void fuzzyNameMatchAll() {
+		NameMatcher matcher = new NameMatcher();
+		List<PersonNameMatcher> source = TestPersons.persons(5, 200);
+
+		ArrayList<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		ArrayList<PersonNameMatcher> persons = new ArrayList<PersonNameMatcher>(
+				0);
+		ArrayList<String> alternateLastNames = new ArrayList<String>(0);
+		for (int i = 0; i < source.size(); i++) {
+			PersonNameMatcher person = source.get(i);
+			if (i % 4 == 0) {
+				persons.add(person);
+				alternateLastNames.add(i % 8 == 0 ? "CAGEY" : null);
+			} else {
+				candidates.add(person);
+			}
+		}
+
+		List<List<PersonNameMatcher>> found = matcher.fuzzyNameMatchAll(
+				persons, candidates, alternateLastNames, 8, 3);
+		Assert.assertEquals(persons.size(), found.size());
+		for (int i = 0; i < persons.size(); i++) {
+			Assert.assertEquals(matcher.fuzzyNameMatch(persons.get(i),
+					candidates, alternateLastNames.get(i), 8, 3), found.get(i));
+		}
+	}
+
+	@Test
+	public void fuzzyNameMatchStream() {
+		NameMatcher matcher = new NameMatcher();
+		List<PersonNameMatcher> candidates = TestPersons.persons(9, 5000);
+
+		for (int i = 0; i < 5; i++) {
+			PersonNameMatcher person = candidates.get(i * 997);
+			List<PersonNameMatcher> expecteds = matcher.fuzzyNameMatch(person,
+					candidates, "CAGEY", 8, 25);
+			Assert.assertEquals(25, expecteds.size());
+			Assert.assertEquals(expecteds, matcher.fuzzyNameMatch(person,
+					candidates.iterator(), "CAGEY", 8, 25));
+			Assert.assertEquals(expecteds, matcher.fuzzyNameMatch(person,
+					candidates.stream(), "CAGEY", 8, 25));
+			Assert.assertEquals(expecteds, matcher.fuzzyNameMatch(person,
+					candidates.parallelStream(), "CAGEY", 8, 25));
+		}
+	}
+
+	@Test
+	public void fuzzyNameClusters() {
+		NameMatcher matcher = new NameMatcher();
+		List<PersonNameMatcher> persons = TestPersons.persons(10, 300);
+
+		// Join every matching pair by relabelling, one pair at a time
+		int[] expecteds = new int[persons.size()];
+		for (int i = 0; i < expecteds.length; i++) {
+			expecteds[i] = i;
+		}
+		for (int i = 0; i < persons.size(); i++) {
+			for (int j = i + 1; j < persons.size(); j++) {
+				if (!matcher.fuzzyNameMatch(persons.get(i),
+						persons.subList(j, j + 1), null, 4, 1).isEmpty()) {
+					int from = Math.max(expecteds[i], expecteds[j]);
+					int to = Math.min(expecteds[i], expecteds[j]);
+					for (int k = 0; k < expecteds.length; k++) {
+						if (expecteds[k] == from) {
+							expecteds[k] = to;
+						}
+					}
+				}
+			}
+		}
+
+		int[] clusters = matcher.fuzzyNameClusters(persons, 4);
+		Assert.assertEquals(Arrays.toString(expecteds),
+				Arrays.toString(clusters));
+		Assert.assertTrue(clusters[persons.size() - 1] < persons.size() - 1);
+	}
+
+	@Test
+	public void fuzzyNameMatchAllocatesNothingPerCandidate() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean()
+				instanceof ThreadMXBean);
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		List<PersonNameMatcher> large = TestPersons.persons(17, 40000);
+		List<PersonNameMatcher> small = large.subList(0, 10000);
+		PreparedCandidates smallCandidates = new PreparedCandidates(small);
+		PreparedCandidates largeCandidates = new PreparedCandidates(large);
+		NameMatcher matcher = new NameMatcher();
+		PersonNameMatcher person = large.get(7);
+
+		// Warm up, then compare what a match allocates against 10000 and
+		// 40000 candidates: only the query and its results allocate
+		long smallBytes = 0;
+		long largeBytes = 0;
+		for (int i = 0; i < 20; i++) {
+			long start = threads.getThreadAllocatedBytes(Thread
+					.currentThread().getId());
+			matcher.fuzzyNameMatch(person, smallCandidates, "CAGEY", 8, 10);
+			long middle = threads.getThreadAllocatedBytes(Thread
+					.currentThread().getId());
+			matcher.fuzzyNameMatch(person, largeCandidates, "CAGEY", 8, 10);
+			long end = threads.getThreadAllocatedBytes(Thread
+					.currentThread().getId());
+			smallBytes = middle - start;
+			largeBytes = end - middle;
+		}
+		Assert.assertTrue("Allocated " + smallBytes + " then " + largeBytes
+				+ " bytes", largeBytes - smallBytes < 1024);
+	}
+
+	@Test
+	public void fuzzyNameMatchWithTimeout() throws Exception {
+		List<PersonNameMatcher> source = TestPersons.persons(21, 5000);
+		PreparedCandidates candidates = new PreparedCandidates(source);
+		NameMatcher matcher = new NameMatcher();
+
+		// Given the time, the same matches in the same order
+		for (int i = 0; i < 30; i++) {
+			PersonNameMatcher person = source.get(i * 97);
+			int ceiling = i % 12;
+			int maxReturns = 1 + i % 9;
+			MatchResult result = matcher.fuzzyNameMatch(person, candidates,
+					"SMITH", ceiling, maxReturns, 1, TimeUnit.MINUTES);
+			Assert.assertTrue(result.isComplete());
+			Assert.assertEquals(matcher.fuzzyNameMatch(person, candidates,
+					"SMITH", ceiling, maxReturns), result.getMatches());
+		}
+
+		// Out of time
+		MatchResult late = matcher.fuzzyNameMatch(source.get(0), candidates,
+				null, 8, 5, 0, TimeUnit.MILLISECONDS);
+		Assert.assertFalse(late.isComplete());
+		Assert.assertTrue(late.getMatches().isEmpty());
+
+		CompletableFuture<MatchResult> future = matcher.fuzzyNameMatchAsync(
+				source.get(1), candidates, null, 8, 5, 1, TimeUnit.MINUTES);
+		Assert.assertEquals(matcher.fuzzyNameMatch(source.get(1),
+				candidates, null, 8, 5), future.get().getMatches());
+
+		// Cancelled before it ran
+		final List<Runnable> queued = new ArrayList<Runnable>();
+		future = matcher.fuzzyNameMatchAsync(source.get(2), candidates, null,
+				8, 5, 1, TimeUnit.MINUTES, new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						queued.add(command);
+					}
+				});
+		Assert.assertTrue(future.cancel(true));
+		queued.get(0).run();
+		Assert.assertTrue(future.isCancelled());
+	}
+
+	/**
+	 * Holds up the first candidate not born on the person's date until the
+	 * time is up, so the match stops after the first tier.
+	 */
+	private static final class HoldingStage implements ScoringStage {
+		private final long until;
+		private boolean held;
+
+		private HoldingStage(long until) {
+			this.until = until;
+		}
+
+		@Override
+		public int getCost() {
+			return 0;
+		}
+
+		@Override
+		public int getMinimum() {
+			return 0;
+		}
+
+		@Override
+		public int score(PersonNameMatcher person,
+				PersonNameMatcher candidate, int budget) {
+			if (!held
+					&& !person.getDateOfBirth().equals(
+							candidate.getDateOfBirth())) {
+				held = true;
+				for (long wait; (wait = until - System.nanoTime()) > 0;) {
+					LockSupport.parkNanos(wait);
+				}
+			}
+			return 0;
+		}
+	}
+
+	@Test
+	public void fuzzyNameMatchStopsAfterFirstTier() {
+		List<PersonNameMatcher> source = TestPersons.persons(21, 5000);
+		PreparedCandidates candidates = new PreparedCandidates(source);
+		PersonNameMatcher person = source.get(0);
+		List<PersonNameMatcher> all = new NameMatcher().fuzzyNameMatch(
+				person, candidates, null, 12, source.size());
+
+		long start = System.nanoTime();
+		HoldingStage stage = new HoldingStage(start
+				+ TimeUnit.MILLISECONDS.toNanos(600));
+		NameMatcher matcher = new NameMatcher(new NameMatcherConfig(null,
+				null, null, null, Arrays.<ScoringStage> asList(stage)));
+		MatchResult partial = matcher.fuzzyNameMatch(person, candidates,
+				null, 12, source.size(), 500, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(stage.held);
+		Assert.assertFalse(partial.isComplete());
+		Assert.assertTrue(partial.getMatches().size() < all.size());
+
+		// Every candidate born on the same date, of the same gender
+		int exact = 0;
+		for (PersonNameMatcher match : all) {
+			if (match.getDateOfBirth().equals(person.getDateOfBirth())
+					&& match.getGender().equals(person.getGender())) {
+				exact++;
+				Assert.assertTrue(partial.getMatches().contains(match));
+			}
+		}
+		Assert.assertTrue(exact > 1);
+	}
 }
@@ -0,0 +1,81 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.LiveCandidates;
+import snippets.NameMatcher;
+import snippets.NameNormalizer;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+import snippets.ShardedCandidates;
+
+public class NameNormalizerTest {
+
+	@Test
+	public void normalize() {
+		Assert.assertNull(NameNormalizer.normalize(null));
+		Assert.assertEquals("", NameNormalizer.normalize(""));
+		Assert.assertEquals("", NameNormalizer.normalize(" -.- "));
+		Assert.assertEquals("CAGEY", NameNormalizer.normalize("CAGEY"));
+		Assert.assertEquals("OBRIEN-NUNEZ",
+				NameNormalizer.normalize(" o'Brien --  N\u00FA\u00F1ez"));
+		Assert.assertEquals("MC NICKOLS-CAGEY",
+				NameNormalizer.normalize("Mc\tNickols - Cagey."));
+		Assert.assertEquals("MULLER",
+				NameNormalizer.normalize("M\u00FCller"));
+		Assert.assertEquals("STRASSE",
+				NameNormalizer.normalize("Stra\u00DFe"));
+		Assert.assertEquals("SOREN LOVBORG",
+				NameNormalizer.normalize("S\u00F8ren L\u00F8vborg"));
+		Assert.assertEquals("JOSE", NameNormalizer.normalize("Jos\u00E9"));
+	}
+
+	@Test
+	public void fuzzyNameMatch() {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("Nicholas", "O'Brien-Cagey", "M",
+				1957, 3, 24));
+		candidates.add(TestPersons.person("JOANNE", "M\u00DCLLER", "F", 1962, 4,
+				25));
+
+		NameMatcher matcher = new NameMatcher();
+		PersonNameMatcher person = TestPersons.person("NICHOLAS",
+				"OBRIEN - CAGEY", "M", 1957, 3, 24);
+		PersonNameMatcher other = TestPersons.person("Joanne", "Muller", "F",
+				1962, 4, 25);
+
+		// As they are, the names are too far apart
+		PreparedCandidates raw = new PreparedCandidates(candidates);
+		Assert.assertFalse(raw.isNormalized());
+		Assert.assertTrue(matcher.fuzzyNameMatch(person, raw, null, 0, 5)
+				.isEmpty());
+		Assert.assertTrue(matcher.fuzzyNameMatch(other, raw, null, 0, 5)
+				.isEmpty());
+
+		PreparedCandidates normalized = new PreparedCandidates(candidates,
+				true);
+		Assert.assertEquals(candidates.subList(0, 1),
+				matcher.fuzzyNameMatch(person, normalized, null, 0, 5));
+		Assert.assertEquals(candidates.subList(1, 2),
+				matcher.fuzzyNameMatch(other, normalized, null, 0, 5));
+		Assert.assertEquals(candidates.subList(0, 1), matcher.fuzzyNameMatch(
+				TestPersons.person("Nick", "Smith", "M", 1957, 3, 24),
+				normalized,
+				"o'brien", 8, 5));
+
+		LiveCandidates<Integer> live = new LiveCandidates<Integer>(true);
+		live.put(0, candidates.get(0));
+		live.put(1, candidates.get(1));
+		Assert.assertEquals(candidates.subList(1, 2),
+				matcher.fuzzyNameMatch(other, live, null, 0, 5));
+
+		ShardedCandidates sharded = new ShardedCandidates(candidates, 2, true);
+		Assert.assertEquals(candidates.subList(0, 1),
+				matcher.fuzzyNameMatch(person, sharded, null, 0, 5));
+	}
+}
@@ -0,0 +1,70 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.NameMatcher;
+import snippets.NameTreeIndex;
+import snippets.PersonNameMatcher;
+
+public class NameTreeIndexTest {
+
+	@Test
+	public void candidates() {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3,
+				24));
+		candidates.add(TestPersons.person("NICK", "MCNICKOLS-CAGEY", "M", 2002,
+				9, 15));
+		candidates.add(TestPersons.person("NICHOLAS", "CAGE", "M", 1957, 3,
+				24));
+		candidates.add(TestPersons.person("LAURA", "MCNICKOLS", "F", 1972, 7,
+				4));
+		NameTreeIndex index = new NameTreeIndex(candidates);
+
+		PersonNameMatcher person = TestPersons.person("NICHOLAS", "CAGEY", "M",
+				1957, 3, 24);
+		Assert.assertArrayEquals(new int[] { 0 },
+				index.candidates(person, null, 0));
+		Assert.assertArrayEquals(new int[] { 0, 2 },
+				index.candidates(person, null, 1));
+		Assert.assertArrayEquals(new int[] { 0, 2 },
+				index.candidates(person, null, 4));
+		Assert.assertArrayEquals(new int[] { 0, 1, 2 },
+				index.candidates(person, null, 5));
+		// Alternate last name
+		Assert.assertArrayEquals(new int[] { 0 }, index.candidates(
+				TestPersons.person("NICHOLAS", "MCNICKOLS", "M", 1957, 3, 24),
+				"CAGEY", 0));
+	}
+
+	@Test
+	public void fuzzyNameMatch() {
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3,
+				24));
+		candidates.add(TestPersons.person("JOANNE", "CAGEY", "F", 1962, 4, 25));
+		candidates.add(TestPersons.person("LAURA", "MCNICKOLS", "F", 1972, 7,
+				4));
+		candidates.add(TestPersons.person("NICHOLS", "MCNICKOLS-CAGEY", "M",
+				2002, 9, 15));
+		candidates.add(TestPersons.person("MICHELLE", "CAGEY", "F", 2015, 1,
+				10));
+		NameTreeIndex index = new NameTreeIndex(candidates);
+		NameMatcher matcher = new NameMatcher();
+
+		PersonNameMatcher person = TestPersons.person("NICHOLS", "CAGEY", "M",
+				1972, 7, 4);
+		for (int ceiling = 0; ceiling < 25; ceiling++) {
+			Assert.assertEquals(
+					matcher.fuzzyNameMatch(person, candidates, "CAGEY",
+							ceiling, 5),
+					matcher.fuzzyNameMatch(person, index, "CAGEY", ceiling, 5));
+		}
+	}
+}
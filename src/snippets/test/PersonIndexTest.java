@@ -0,0 +1,91 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.BlockingKey;
+import snippets.NameMatcher;
+import snippets.PersonIndex;
+import snippets.PersonNameMatcher;
+
+public class PersonIndexTest {
+
+	@Test
+	public void candidates() {
+		TestPersonNameMatcher smyth = TestPersons.person("JOHN", "SMYTH", "M",
+				1980, 0, 1);
+		TestPersonNameMatcher hyphenated = TestPersons.person("ANNE",
+				"MCNICKOLS-CAGEY", "F", 1975, 5, 12);
+		TestPersonNameMatcher married = TestPersons.person("JOANNE",
+				"WASHINGTON", "F", 1962, 4, 25);
+		TestPersonNameMatcher stranger = TestPersons.person("ALBERT", "GARCIA",
+				"M", 1990, 2, 3);
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(smyth);
+		candidates.add(hyphenated);
+		candidates.add(married);
+		candidates.add(stranger);
+
+		PersonIndex index = new PersonIndex(candidates);
+
+		// Soundex and metaphone of the whole last name
+		Assert.assertArrayEquals(new int[] { 0 }, index.candidates(
+				TestPersons.person("JON", "SMITH", "M", 1980, 0, 1), null, 8));
+
+		// Hyphenated part, or the alternate last name
+		Assert.assertArrayEquals(new int[] { 1 }, index.candidates(
+				TestPersons.person("ANNE", "CAGEY", "F", 1975, 5, 12), null,
+				8));
+		Assert.assertArrayEquals(new int[] { 0, 1 }, index.candidates(
+				TestPersons.person("ANNE", "SMITH", "F", 1975, 5, 12), "CAGY",
+				8));
+
+		// Last name changed, same first initial and year of birth
+		Assert.assertArrayEquals(new int[] { 2 }, index.candidates(
+				TestPersons.person("JOANNE", "MILLER", "F", 1962, 4, 25), null,
+				8));
+		Assert.assertArrayEquals(new int[] {}, new PersonIndex(candidates,
+				EnumSet.of(BlockingKey.LAST_NAME_SOUNDEX)).candidates(
+				TestPersons.person("JOANNE", "MILLER", "F", 1962, 4, 25), null,
+				8));
+
+		// No keys is a full scan
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3 }, new PersonIndex(
+				candidates, EnumSet.noneOf(BlockingKey.class)).candidates(
+				TestPersons.person("JOANNE", "MILLER", "F", 1962, 4, 25), null,
+				8));
+	}
+
+	@Test
+	public void fuzzyNameMatch() {
+		TestPersonNameMatcher exact = TestPersons.person("NICHOLAS", "CAGEY",
+				"M", 1957, 3, 24);
+		TestPersonNameMatcher typo = TestPersons.person("NICHOLAS", "KAGEY",
+				"M", 1957, 3, 24);
+		TestPersonNameMatcher sibling = TestPersons.person("JOANNE", "CAGEY",
+				"F", 1962, 4, 25);
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				0);
+		candidates.add(sibling);
+		candidates.add(typo);
+		candidates.add(exact);
+
+		NameMatcher matcher = new NameMatcher();
+		PersonNameMatcher person = TestPersons.person("NICHOLAS", "CAGEY", "M",
+				1957, 3, 24);
+
+		List<PersonNameMatcher> expecteds = matcher.fuzzyNameMatch(person,
+				candidates, null, 8, 5);
+		Assert.assertEquals(2, expecteds.size());
+		Assert.assertSame(exact, expecteds.get(0));
+		Assert.assertSame(typo, expecteds.get(1));
+
+		Assert.assertEquals(expecteds, matcher.fuzzyNameMatch(person,
+				new PersonIndex(candidates), null, 8, 5));
+	}
+}
@@ -0,0 +1,210 @@
+package snippets.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+import snippets.QueryRecorder;
+import snippets.RecordedQuery;
+import snippets.ScoringStage;
+
+public class QueryRecorderTest {
+
+	private static List<RecordedQuery> record(boolean pseudonymize)
+			throws IOException {
+		List<PersonNameMatcher> source = new ArrayList<PersonNameMatcher>();
+		source.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24));
+		source.add(TestPersons.person("JOANNE", "WASHINGTON", "F", 1962, 4,
+				25));
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		QueryRecorder recorder = new QueryRecorder(log, pseudonymize);
+		NameMatcher matcher = new NameMatcher(NameMatcherConfig.DEFAULT,
+				recorder);
+		matcher.fuzzyNameMatch(
+				TestPersons.person("NICOLAS", "MCNICKOLS-CAGEY", "M", 1957, 3,
+				24),
+				new PreparedCandidates(source), "CAGE", -1, 3);
+		matcher.fuzzyNameMatch(
+				TestPersons.person("Jo-Anne", "Washington", null, 1962, 4, 25),
+				source.iterator(), null, 8, 0);
+		matcher.fuzzyNameMatch(TestPersons.person("\u00D8yvind",
+				"N\u00FA\u00F1ez", "M", 1957, 3, 24), source.iterator(),
+				null, 8, 1);
+		recorder.close();
+		return RecordedQuery.read(new ByteArrayInputStream(log
+				.toByteArray()));
+	}
+
+	@Test
+	public void record() throws IOException {
+		List<RecordedQuery> queries = record(false);
+		Assert.assertEquals(3, queries.size());
+
+		RecordedQuery first = queries.get(0);
+		Assert.assertEquals("MCNICKOLS-CAGEY", first.getPerson()
+				.getLastName());
+		Assert.assertEquals("NICOLAS", first.getPerson().getFirstName());
+		Assert.assertEquals("M", first.getPerson().getGender());
+		Assert.assertEquals(1957, first.getPerson().getDateOfBirth()
+				.get(Calendar.YEAR));
+		Assert.assertEquals("CAGE", first.getAlternateLastName());
+		Assert.assertEquals(0, first.getCeiling());
+		Assert.assertEquals(3, first.getMaxReturns());
+		Assert.assertEquals(2, first.getSourceSize());
+		Assert.assertTrue(first.getNanos() > 0);
+
+		RecordedQuery second = queries.get(1);
+		Assert.assertEquals("Washington", second.getPerson().getLastName());
+		Assert.assertNull(second.getPerson().getGender());
+		Assert.assertNull(second.getAlternateLastName());
+		Assert.assertEquals("Jo-Anne", second.getPerson().getFirstName());
+		Assert.assertEquals(8, second.getCeiling());
+		Assert.assertEquals(1, second.getMaxReturns());
+		Assert.assertEquals(2, second.getSourceSize());
+		Assert.assertTrue(second.getArrivalNanos() >= first
+				.getArrivalNanos());
+
+		Assert.assertEquals("N\u00FA\u00F1ez", queries.get(2).getPerson()
+				.getLastName());
+		Assert.assertEquals("\u00D8yvind", queries.get(2).getPerson()
+				.getFirstName());
+	}
+
+	@Test
+	public void pseudonymize() throws IOException {
+		List<RecordedQuery> queries = record(true);
+		// MCNICKOLS-CAGEY, NICOLAS and CAGE
+		String lastName = queries.get(0).getPerson().getLastName();
+		String firstName = queries.get(0).getPerson().getFirstName();
+		String alternateLastName = queries.get(0).getAlternateLastName();
+		Assert.assertEquals(15, lastName.length());
+		Assert.assertEquals('-', lastName.charAt(9));
+		// The same letters are swapped the same way everywhere
+		Assert.assertEquals(lastName.charAt(1), lastName.charAt(4));
+		Assert.assertEquals(lastName.substring(2, 5),
+				firstName.substring(0, 3));
+		Assert.assertEquals(lastName.substring(10),
+				alternateLastName + lastName.charAt(14));
+		Assert.assertEquals("M", queries.get(0).getPerson().getGender());
+
+		Calendar dob = queries.get(0).getPerson().getDateOfBirth();
+		Assert.assertEquals(3, dob.get(Calendar.MONTH));
+		Assert.assertEquals(24, dob.get(Calendar.DATE));
+		Assert.assertTrue(Math.abs(dob.get(Calendar.YEAR) - 1957) <= 5);
+		Assert.assertEquals(5, queries.get(1).getPerson().getDateOfBirth()
+				.get(Calendar.YEAR)
+				- dob.get(Calendar.YEAR));
+
+		String jo = queries.get(1).getPerson().getFirstName();
+		Assert.assertTrue(jo, jo.matches("[A-Z][a-z]-[A-Z][a-z]{3}"));
+
+		// Accents taken off and letters with no A to Z form dropped
+		String nunez = queries.get(2).getPerson().getLastName();
+		Assert.assertTrue(nunez, nunez.matches("[A-Z][a-z]{4}"));
+		Assert.assertEquals(firstName.charAt(0), nunez.charAt(0));
+		Assert.assertEquals(Character.toLowerCase(nunez.charAt(0)),
+				nunez.charAt(2));
+		String yvind = queries.get(2).getPerson().getFirstName();
+		Assert.assertTrue(yvind, yvind.matches("[a-z]{5}"));
+		Assert.assertEquals(Character.toLowerCase(firstName.charAt(1)),
+				yvind.charAt(2));
+	}
+
+	@Test
+	public void clustersNotRecorded() throws IOException {
+		List<PersonNameMatcher> source = TestPersons.persons(10, 50);
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		QueryRecorder recorder = new QueryRecorder(log, false);
+		NameMatcher matcher = new NameMatcher(NameMatcherConfig.DEFAULT,
+				recorder);
+		matcher.fuzzyNameClusters(source, 4);
+		matcher.fuzzyNameMatch(source.get(0), source.iterator(), null, 4, 3);
+		recorder.close();
+
+		List<RecordedQuery> queries = RecordedQuery
+				.read(new ByteArrayInputStream(log.toByteArray()));
+		Assert.assertEquals(1, queries.size());
+		Assert.assertEquals(3, queries.get(0).getMaxReturns());
+	}
+
+	/**
+	 * Holds up the matches of SLOW until released.
+	 */
+	private static final class SlowStage implements ScoringStage {
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		@Override
+		public int getCost() {
+			return 0;
+		}
+
+		@Override
+		public int getMinimum() {
+			return 0;
+		}
+
+		@Override
+		public int score(PersonNameMatcher person,
+				PersonNameMatcher candidate, int budget) {
+			if ("SLOW".equals(person.getFirstName())) {
+				entered.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return 0;
+		}
+	}
+
+	@Test
+	public void readInArrivalOrder() throws Exception {
+		final List<PersonNameMatcher> source = new ArrayList<PersonNameMatcher>();
+		source.add(TestPersons.person("NICHOLAS", "CAGEY", "M", 1957, 3, 24));
+		SlowStage stage = new SlowStage();
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		QueryRecorder recorder = new QueryRecorder(log, false);
+		final NameMatcher matcher = new NameMatcher(new NameMatcherConfig(
+				null, null, null, null, Arrays.<ScoringStage> asList(stage)),
+				recorder);
+
+		// SLOW arrives first and finishes, so is recorded, last
+		Thread slow = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				matcher.fuzzyNameMatch(TestPersons.person("SLOW", "CAGEY",
+						"M", 1957, 3, 24), source.iterator(), null, 12, 1);
+			}
+		});
+		slow.start();
+		stage.entered.await();
+		matcher.fuzzyNameMatch(TestPersons.person("FAST", "CAGEY", "M",
+				1957, 3, 24), source.iterator(), null, 12, 1);
+		stage.released.countDown();
+		slow.join();
+		recorder.close();
+
+		List<RecordedQuery> queries = RecordedQuery
+				.read(new ByteArrayInputStream(log.toByteArray()));
+		Assert.assertEquals(2, queries.size());
+		Assert.assertEquals("SLOW", queries.get(0).getPerson().getFirstName());
+		Assert.assertEquals("1", queries.get(0).getPerson().getId());
+		Assert.assertEquals("FAST", queries.get(1).getPerson().getFirstName());
+		Assert.assertTrue(queries.get(0).getArrivalNanos() < queries.get(1)
+				.getArrivalNanos());
+	}
+}
@@ -0,0 +1,136 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.MatchStatistics;
+import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PersonNameMatcher;
+import snippets.ScoringStage;
+
+public class ScoringStageTest {
+
+	/**
+	 * Adds 1, or 5 when the weak match values differ.
+	 */
+	private static final class WeakMatchValueStage implements ScoringStage {
+		private int calls;
+
+		@Override
+		public int getCost() {
+			return 0;
+		}
+
+		@Override
+		public int getMinimum() {
+			return 1;
+		}
+
+		@Override
+		public int score(PersonNameMatcher person,
+				PersonNameMatcher candidate, int budget) {
+			calls++;
+			return ((TestPersonNameMatcher) person).getWeakMatchValue().equals(
+					((TestPersonNameMatcher) candidate).getWeakMatchValue()) ? 1
+					: 5;
+		}
+	}
+
+	/**
+	 * Rejects every candidate.
+	 */
+	private static final class RejectingStage implements ScoringStage {
+		private final int cost;
+		private int calls;
+
+		private RejectingStage(int cost) {
+			this.cost = cost;
+		}
+
+		@Override
+		public int getCost() {
+			return cost;
+		}
+
+		@Override
+		public int getMinimum() {
+			return 0;
+		}
+
+		@Override
+		public int score(PersonNameMatcher person,
+				PersonNameMatcher candidate, int budget) {
+			calls++;
+			return -1;
+		}
+	}
+
+	@Test
+	public void stages() {
+		TestPersonNameMatcher same = TestPersons.person("NICHOLAS", "CAGEY",
+				"M", 1957, 3, 24, "A");
+		TestPersonNameMatcher close = TestPersons.person("NICOLAS", "CAGEY",
+				"M", 1957, 3, 24, "A");
+		TestPersonNameMatcher other = TestPersons.person("NICHOLAS", "CAGEY",
+				"M", 1957, 3, 24, "B");
+		List<PersonNameMatcher> candidates = new ArrayList<PersonNameMatcher>(
+				Arrays.<PersonNameMatcher> asList(other, close, same));
+		TestPersonNameMatcher person = TestPersons.person("NICHOLAS", "CAGEY",
+				"M", 1957, 3, 24, "A");
+
+		// Without stages the exact match ties with the other weak value
+		NameMatcher plain = new NameMatcher();
+		Assert.assertEquals(Arrays.asList(other, same, close),
+				plain.fuzzyNameMatch(person, candidates, null, 8, 3));
+
+		WeakMatchValueStage stage = new WeakMatchValueStage();
+		MatchStatistics statistics = new MatchStatistics();
+		NameMatcher staged = new NameMatcher(new NameMatcherConfig(null,
+				null, null, null, Arrays.<ScoringStage> asList(stage)),
+				statistics);
+		Assert.assertEquals(Arrays.asList(same, close, other),
+				staged.fuzzyNameMatch(person, candidates, null, 8, 3));
+		Assert.assertEquals(3, stage.calls);
+
+		// The stage is cheaper than the names, so it rejects the other weak
+		// value before any distance: one distance for the close first name,
+		// the first and last name for the exact match
+		long levenshteinCalls = statistics.getLevenshteinCalls();
+		Assert.assertEquals(Arrays.asList(same),
+				staged.fuzzyNameMatch(person, candidates, null, 1, 3));
+		Assert.assertEquals(3, statistics.getLevenshteinCalls()
+				- levenshteinCalls);
+	}
+
+	@Test
+	public void stagesRunBetweenTheNames() {
+		List<PersonNameMatcher> candidates = Arrays
+				.<PersonNameMatcher> asList(TestPersons.person("NICOLAS",
+						"CAGEY", "M", 1957, 3, 24), TestPersons.person(
+						"NICHOLAS", "CAGE", "M", 1957, 3, 24));
+		PersonNameMatcher person = TestPersons.person("NICHOLAS", "CAGEY",
+				"M", 1957, 3, 24);
+
+		// Before the first name, after it, and after the last name (equal
+		// costs run after the name distance)
+		int[] costs = { 0, ScoringStage.FIRST_NAME_COST,
+				ScoringStage.LAST_NAME_COST };
+		int[] distances = { 0, 2, 4 };
+		for (int i = 0; i < costs.length; i++) {
+			RejectingStage stage = new RejectingStage(costs[i]);
+			MatchStatistics statistics = new MatchStatistics();
+			NameMatcher matcher = new NameMatcher(new NameMatcherConfig(null,
+					null, null, null, Arrays.<ScoringStage> asList(stage)),
+					statistics);
+			Assert.assertTrue(matcher.fuzzyNameMatch(person, candidates,
+					null, 8, 3).isEmpty());
+			Assert.assertEquals(2, stage.calls);
+			Assert.assertEquals(distances[i], statistics.getLevenshteinCalls());
+		}
+	}
+}
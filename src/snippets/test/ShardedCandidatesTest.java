@@ -0,0 +1,95 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import snippets.MatchRule;
+import snippets.MatchStatistics;
+import snippets.NameMatcher;
+import snippets.NameMatcherConfig;
+import snippets.PersonNameMatcher;
+import snippets.PreparedCandidates;
+import snippets.ShardedCandidates;
+
+public class ShardedCandidatesTest {
+
+	@Test
+	public void fuzzyNameMatch() {
+		Random random = new Random(19);
+		List<PersonNameMatcher> source = new ArrayList<PersonNameMatcher>();
+		for (int i = 0; i < 3000; i++) {
+			source.add(TestPersons.person(random));
+		}
+		PreparedCandidates prepared = new PreparedCandidates(source);
+		NameMatcher matcher = new NameMatcher();
+
+		for (int shardCount : new int[] { 1, 3, 31, 40, 64 }) {
+			ShardedCandidates sharded = new ShardedCandidates(source,
+					shardCount);
+			Assert.assertEquals(shardCount, sharded.getShardCount());
+			int total = 0;
+			for (int shard = 0; shard < shardCount; shard++) {
+				total += sharded.getShardSize(shard);
+			}
+			Assert.assertEquals(source.size(), total);
+
+			for (int i = 0; i < 40; i++) {
+				PersonNameMatcher person = TestPersons.person(random);
+				int ceiling = i % 12;
+				int maxReturns = 1 + i % 7;
+				Assert.assertEquals(matcher.fuzzyNameMatch(person, prepared,
+						null, ceiling, maxReturns), matcher.fuzzyNameMatch(
+						person, sharded, null, ceiling, maxReturns));
+			}
+		}
+	}
+
+	@Test
+	public void everyShardIsUsed() {
+		// Three years of birth fill two shards a day
+		List<PersonNameMatcher> source = TestPersons.persons(23, 3000);
+		for (int shardCount : new int[] { 31, 40, 62, 70 }) {
+			ShardedCandidates sharded = new ShardedCandidates(source,
+					shardCount);
+			for (int shard = 0; shard < shardCount; shard++) {
+				Assert.assertTrue(shardCount + " shards, " + shard,
+						sharded.getShardSize(shard) > 0);
+			}
+		}
+	}
+
+	@Test
+	public void onlyRoutesToShardsThatCanMatch() {
+		Random random = new Random(91);
+		List<PersonNameMatcher> source = new ArrayList<PersonNameMatcher>();
+		for (int i = 0; i < 3000; i++) {
+			source.add(TestPersons.person(random));
+		}
+		ShardedCandidates sharded = new ShardedCandidates(source, 8);
+		PersonNameMatcher person = TestPersons.person(random);
+		int day = person.getDateOfBirth().get(Calendar.DATE);
+
+		MatchStatistics statistics = new MatchStatistics();
+		NameMatcher matcher = new NameMatcher(NameMatcherConfig.DEFAULT,
+				statistics);
+		matcher.fuzzyNameMatch(person, sharded, null, 6, 5);
+		long scored = 0;
+		for (MatchRule rule : MatchRule.values()) {
+			scored += statistics.getCandidates(rule);
+		}
+		Assert.assertEquals(sharded.getShardSize((day - 1) % 8), scored);
+
+		// Four increments can be reached from any day
+		matcher.fuzzyNameMatch(person, sharded, null, 8, 5);
+		scored = -scored;
+		for (MatchRule rule : MatchRule.values()) {
+			scored += statistics.getCandidates(rule);
+		}
+		Assert.assertEquals(source.size(), scored);
+	}
+}
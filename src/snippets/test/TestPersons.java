@@ -0,0 +1,74 @@
+package snippets.test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import snippets.PersonNameMatcher;
+
+/**
+ * {@link TestPersonNameMatcher}s for the tests: one made to order, or made
+ * up at random from a few names that are close to each other, over three
+ * years and two months of dates of birth so many of them match.
+ */
+public final class TestPersons {
+
+	static final String[] LAST_NAMES = { "CAGEY", "CAGE", "MCNICKOLS",
+			"MCNICKOLS-CAGEY", "SMITH", "SMYTH" };
+	static final String[] FIRST_NAMES = { "NICHOLAS", "NICOLAS", "JOANNE",
+			"LAURA", "MICHELLE" };
+
+	private TestPersons() {
+	}
+
+	/**
+	 * @return a person whose weak match value is "012345"
+	 */
+	static TestPersonNameMatcher person(String firstName, String lastName,
+			String gender, int year, int month, int date) {
+		return person(firstName, lastName, gender, year, month, date,
+				"012345");
+	}
+
+	static TestPersonNameMatcher person(String firstName, String lastName,
+			String gender, int year, int month, int date,
+			String weakMatchValue) {
+		Calendar dob = Calendar.getInstance();
+		dob.clear();
+		dob.set(year, month, date);
+		TestPersonNameMatcher person = new TestPersonNameMatcher();
+		person.setFirstName(firstName);
+		person.setLastName(lastName);
+		person.setGender(gender);
+		person.setDateOfBirth(dob);
+		person.setWeakMatchValue(weakMatchValue);
+		return person;
+	}
+
+	/**
+	 * @return a person made up from the names, born in the first two months
+	 *         (the 29th to 31st of February roll over into March) of 1970
+	 *         to 1972
+	 */
+	static TestPersonNameMatcher person(Random random) {
+		return person(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+				LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+				random.nextBoolean() ? "M" : "F", 1970 + random.nextInt(3),
+				random.nextInt(2), 1 + random.nextInt(31));
+	}
+
+	/**
+	 * @return persons made up by {@link #person(Random)}, the same for the
+	 *         same seed
+	 */
+	static List<PersonNameMatcher> persons(long seed, int count) {
+		Random random = new Random(seed);
+		List<PersonNameMatcher> persons = new ArrayList<PersonNameMatcher>(
+				count);
+		for (int i = 0; i < count; i++) {
+			persons.add(person(random));
+		}
+		return persons;
+	}
+}